@@ -1,34 +1,425 @@
 package client;
 
+import config.ServerConfig;
+import crypto.CryptoUtils;
+import crypto.KeyRatchet;
+import crypto.PassthroughAuth;
+import events.RelayEvent;
+import util.JsonUtils;
+import transport.Channel;
+import javax.crypto.AEADBadTagException;
 import javax.crypto.SecretKey;
-import java.io.*;
-import java.net.Socket;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Represents a connected client
- * Wraps socket, streams, and encryption key
+ * Wraps channel, streams, and encryption key
  */
 public class ClientConnection {
-    public final Socket socket;
-    public final BufferedReader in;
-    public final PrintWriter out;
+    public final Channel channel;
+    public final LineReader in;
+    public final LineWriter out;
+    public final OutboundQueue outbound;
     
-    public SecretKey aesKey;
+    // Bytes of pooled buffers currently held by this connection
+    public final AtomicLong bufferedBytes = new AtomicLong();
+    
+    // Frames, bytes and failures seen on this connection
+    public final ConnectionStats stats = new ConnectionStats();
+    
+    public volatile SecretKey aesKey;
     public String username;
     
+    // Senders encrypt and queue under the read lock; rekey takes the write lock,
+    // so no frame under the old key can be queued behind the rekey frame
+    private final ReentrantReadWriteLock keyLock = new ReentrantReadWriteLock();
+    
+    // Rekey state: previous key stays valid for decrypt during overlap window
+    private volatile SecretKey previousKey;
+    private volatile long previousKeyExpiry;
+    private int keyEpoch;
+    private final AtomicLong framesUnderKey = new AtomicLong();
+    private final AtomicLong bytesUnderKey = new AtomicLong();
+    
+    // Live bulk frames held back while stored ones replay to a new device
+    private final Object holdLock = new Object();
+    private volatile List<HeldFrame> heldBulk;
+    
+    // Passthrough header state
+    private volatile SecretKey macKey;
+    private volatile SecretKey macKeySource;
+    private long passthroughInSeq;
+    private final AtomicLong passthroughOutSeq = new AtomicLong();
+    
+    /**
+     * Creates connection wrapper from channel
+     */
+    public ClientConnection(Channel channel) throws IOException {
+        this.channel = channel;
+        this.in = new LineReader(channel.getInputStream(), bufferedBytes);
+        this.out = new LineWriter(channel.getOutputStream(), bufferedBytes);
+        this.outbound = new OutboundQueue(this);
+    }
+    
+    /**
+     * Encrypts and sends JSON under current key on the bulk lane
+     */
+    public void sendEncrypted(String json) throws Exception {
+        sendEncrypted(json, OutboundQueue.Lane.BULK);
+    }
+    
+    /**
+     * Encrypts and sends JSON under current key on the given lane
+     * Bulk frames are held instead while stored frames replay
+     */
+    public void sendEncrypted(String json, OutboundQueue.Lane lane) throws Exception {
+        if (lane == OutboundQueue.Lane.BULK && heldBulk != null && hold(new HeldFrame(json, false))) {
+            return;
+        }
+        encryptAndSend(json, lane, false);
+    }
+    
+    /**
+     * Encrypts and queues JSON like sendEncrypted, but never writes on the
+     * calling thread; a writer thread drains, so a slow receiver stalls no caller
+     */
+    public void queueEncrypted(String json, OutboundQueue.Lane lane) throws Exception {
+        if (lane == OutboundQueue.Lane.BULK && heldBulk != null && hold(new HeldFrame(json, false))) {
+            return;
+        }
+        encryptAndSend(json, lane, true);
+    }
+    
+    /**
+     * Sends replayed frame (offline inbox, redelivery) ahead of held live ones
+     */
+    public void sendReplayed(String json) throws Exception {
+        encryptAndSend(json, OutboundQueue.Lane.BULK, false);
+    }
+    
+    /**
+     * Holds live bulk frames until releaseBulk()
+     * Set before the device becomes visible to relays
+     */
+    public void holdBulk() {
+        synchronized (holdLock) {
+            heldBulk = new ArrayList<>();
+        }
+    }
+    
+    private boolean hold(HeldFrame frame) throws IOException {
+        synchronized (holdLock) {
+            if (heldBulk == null) {
+                return false;
+            }
+            if (heldBulk.size() >= ServerConfig.OUTBOUND_BULK_LIMIT) {
+                throw new IOException("Outbound queue full");
+            }
+            heldBulk.add(frame);
+            return true;
+        }
+    }
+    
+    /**
+     * Checks if frame is waiting among the held live frames
+     */
+    public boolean isHeld(String json) {
+        synchronized (holdLock) {
+            if (heldBulk == null) {
+                return false;
+            }
+            for (HeldFrame frame : heldBulk) {
+                if (!frame.passthrough && frame.payload.equals(json)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * Sends held frames in arrival order and stops holding
+     * Senders arriving meanwhile wait, so they stay behind the held frames
+     */
+    public void releaseBulk() {
+        synchronized (holdLock) {
+            if (heldBulk == null) {
+                return;
+            }
+            for (HeldFrame frame : heldBulk) {
+                try {
+                    if (frame.passthrough) {
+                        framePassthrough(frame.payload);
+                    } else {
+                        encryptAndSend(frame.payload, OutboundQueue.Lane.BULK, false);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Failed to send held frame to " + this + ": " + e.getMessage());
+                }
+            }
+            // Cleared last: until then new senders queue up on the lock
+            heldBulk = null;
+        }
+    }
+    
+    /**
+     * Encrypts, queues and writes (or leaves writing to a writer thread);
+     * triggers a rekey once frame or byte limits are reached
+     */
+    private void encryptAndSend(String json, OutboundQueue.Lane lane, boolean async) throws Exception {
+        long start = System.nanoTime();
+        byte[] encrypted;
+        boolean queued;
+        keyLock.readLock().lock();
+        try {
+            encrypted = CryptoUtils.encryptRaw(aesKey, json);
+            queued = outbound.offerCiphertext(lane, encrypted);
+        } finally {
+            keyLock.readLock().unlock();
+        }
+        long encryptedAt = System.nanoTime();
+        if (queued) {
+            if (async) {
+                outbound.drainAsync();
+            } else {
+                outbound.drain();
+            }
+        }
+        long written = System.nanoTime();
+        
+        RelayEvent event = RelayEvent.current();
+        if (event != null) {
+            event.encryptNanos += encryptedAt - start;
+            event.writeNanos += written - encryptedAt;
+        }
+        
+        if (!queued) {
+            throw new IOException("Outbound queue full");
+        }
+        recordFrame(LineWriter.encodedLength(encrypted.length), async);
+    }
+    
+    /**
+     * Decrypts Base64 frame under current key, or previous key during overlap window
+     */
+    public String decrypt(String encryptedLine) throws Exception {
+        byte[] ciphertext;
+        try {
+            ciphertext = Base64.getDecoder().decode(encryptedLine);
+        } catch (IllegalArgumentException e) {
+            stats.recordDecryptFailure();
+            throw e;
+        }
+        return decrypt(ciphertext);
+    }
+    
+    /**
+     * Decrypts raw ciphertext under current key, or previous key during overlap window
+     */
+    public String decrypt(byte[] ciphertext) throws Exception {
+        String json;
+        try {
+            json = decryptWithOverlap(ciphertext);
+        } catch (Exception e) {
+            stats.recordDecryptFailure();
+            throw e;
+        }
+        
+        recordFrame(LineWriter.encodedLength(ciphertext.length), false);
+        return json;
+    }
+    
+    private String decryptWithOverlap(byte[] ciphertext) throws Exception {
+        try {
+            return CryptoUtils.decryptRaw(aesKey, ciphertext);
+        } catch (AEADBadTagException e) {
+            SecretKey previous = previousKey;
+            if (previous == null || System.currentTimeMillis() > previousKeyExpiry) {
+                throw e;
+            }
+            return CryptoUtils.decryptRaw(previous, ciphertext);
+        }
+    }
+    
     /**
-     * Creates connection wrapper from socket
+     * Verifies passthrough frame header and returns its opaque blob
+     * Sequence numbers must strictly increase to reject replays; frames tagged
+     * under the previous key are accepted during the rekey overlap window
+     * @return blob, or null if header is malformed or not authentic
      */
-    public ClientConnection(Socket socket) throws IOException {
-        this.socket = socket;
-        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        this.out = new PrintWriter(socket.getOutputStream(), true);
+    public String openPassthrough(String frame) throws Exception {
+        int firstDot = frame.indexOf('.');
+        int secondDot = firstDot < 0 ? -1 : frame.indexOf('.', firstDot + 1);
+        if (frame.charAt(0) != PassthroughAuth.FRAME_PREFIX || secondDot < 0 || secondDot == frame.length() - 1) {
+            return null;
+        }
+        
+        long seq;
+        try {
+            seq = Long.parseLong(frame.substring(1, firstDot));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        
+        String tag = frame.substring(firstDot + 1, secondDot);
+        String blob = frame.substring(secondDot + 1);
+        if (seq <= passthroughInSeq || !tagMatches(tag, seq, blob)) {
+            return null;
+        }
+        
+        passthroughInSeq = seq;
+        return blob;
+    }
+    
+    private boolean tagMatches(String tag, long seq, String blob) throws Exception {
+        String expected = PassthroughAuth.tag(currentMacKey(), PassthroughAuth.CLIENT_TO_SERVER, seq, blob);
+        if (CryptoUtils.constantTimeEquals(expected, tag)) {
+            return true;
+        }
+        
+        SecretKey previous = previousKey;
+        if (previous == null || System.currentTimeMillis() > previousKeyExpiry) {
+            return false;
+        }
+        String previousTag = PassthroughAuth.tag(PassthroughAuth.deriveMacKey(previous),
+            PassthroughAuth.CLIENT_TO_SERVER, seq, blob);
+        return CryptoUtils.constantTimeEquals(previousTag, tag);
+    }
+    
+    /**
+     * Frames opaque blob with authenticated header and sends on bulk lane
+     * Held like other live bulk frames while stored frames replay
+     */
+    public void sendPassthrough(String blob) throws Exception {
+        if (heldBulk != null && hold(new HeldFrame(blob, true))) {
+            return;
+        }
+        framePassthrough(blob);
+    }
+    
+    private void framePassthrough(String blob) throws Exception {
+        boolean queued;
+        keyLock.readLock().lock();
+        try {
+            String frame = PassthroughAuth.frame(currentMacKey(), passthroughOutSeq.incrementAndGet(), blob);
+            queued = outbound.offer(OutboundQueue.Lane.BULK, frame);
+        } finally {
+            keyLock.readLock().unlock();
+        }
+        if (!queued) {
+            throw new IOException("Outbound queue full");
+        }
+        outbound.drain();
+    }
+    
+    /**
+     * Gets header MAC key for current session key, deriving after rekey
+     */
+    private SecretKey currentMacKey() throws Exception {
+        SecretKey key = aesKey;
+        if (macKeySource != key) {
+            macKey = PassthroughAuth.deriveMacKey(key);
+            macKeySource = key;
+        }
+        return macKey;
+    }
+    
+    /**
+     * Counts frame against current key usage limits
+     */
+    private void recordFrame(int bytes, boolean async) throws Exception {
+        long frames = framesUnderKey.incrementAndGet();
+        long total = bytesUnderKey.addAndGet(bytes);
+        if (frames >= ServerConfig.REKEY_FRAME_LIMIT || total >= ServerConfig.REKEY_BYTE_LIMIT) {
+            rekeyIfDue(async);
+        }
+    }
+    
+    /**
+     * Rekeys unless another thread already did
+     */
+    private void rekeyIfDue(boolean async) throws Exception {
+        rekey(true, async);
+    }
+    
+    /**
+     * Ratchets to next key
+     * Rekey frame is the last one sent under the old key
+     */
+    public void rekey() throws Exception {
+        rekey(false, false);
+    }
+    
+    private void rekey(boolean onlyIfDue, boolean async) throws Exception {
+        int epoch;
+        keyLock.writeLock().lock();
+        try {
+            boolean due = framesUnderKey.get() >= ServerConfig.REKEY_FRAME_LIMIT ||
+                bytesUnderKey.get() >= ServerConfig.REKEY_BYTE_LIMIT;
+            if (!isSecure() || (onlyIfDue && !due)) {
+                return;
+            }
+            
+            epoch = keyEpoch + 1;
+            Map<String, Object> msg = new HashMap<>();
+            msg.put("type", "rekey");
+            msg.put("epoch", epoch);
+            outbound.offerBarrier(CryptoUtils.encryptRaw(aesKey, JsonUtils.toJson(msg)));
+            
+            SecretKey next = KeyRatchet.next(aesKey, epoch);
+            previousKey = aesKey;
+            previousKeyExpiry = System.currentTimeMillis() + ServerConfig.REKEY_OVERLAP_MS;
+            aesKey = next;
+            keyEpoch = epoch;
+            framesUnderKey.set(0);
+            bytesUnderKey.set(0);
+        } finally {
+            keyLock.writeLock().unlock();
+        }
+        
+        // Written outside the lock so a slow socket never holds up senders
+        if (async) {
+            outbound.drainAsync();
+        } else {
+            outbound.drain();
+        }
+        System.out.println("✓ Rekey: " + this + " (epoch " + epoch + ")");
+    }
+    
+    /**
+     * Closes channel only, from any thread; the handler's read then fails and
+     * it cleans up (close()) on its own thread
+     */
+    public void abort() {
+        try {
+            if (channel != null && !channel.isClosed()) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing channel: " + e.getMessage());
+        }
     }
     
     /**
      * Closes all resources
      */
     public void close() {
+        // Channel first: unblocks a writer stuck on a consumer that stopped reading
+        try {
+            if (channel != null && !channel.isClosed()) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing channel: " + e.getMessage());
+        }
+        
         try {
             if (in != null) in.close();
         } catch (IOException e) {
@@ -40,14 +431,6 @@ public class ClientConnection {
         } catch (Exception e) {
             System.err.println("Error closing output stream: " + e.getMessage());
         }
-        
-        try {
-            if (socket != null && !socket.isClosed()) {
-                socket.close();
-            }
-        } catch (IOException e) {
-            System.err.println("Error closing socket: " + e.getMessage());
-        }
     }
     
     /**
@@ -66,6 +449,19 @@ public class ClientConnection {
     
     @Override
     public String toString() {
-        return username != null ? username : socket.getInetAddress().toString();
+        return username != null ? username : channel.getPeerAddress();
+    }
+    
+    /**
+     * Live bulk frame held back: chat JSON, or a passthrough blob framed on release
+     */
+    private static class HeldFrame {
+        final String payload;
+        final boolean passthrough;
+        
+        HeldFrame(String payload, boolean passthrough) {
+            this.payload = payload;
+            this.passthrough = passthrough;
+        }
     }
 }
@@ -1,32 +1,34 @@
 package client;
 
-import config.ServerConfig;
-import core.ServerState;
-import protocol.BindManager;
+import core.SynqServer;
 import protocol.MessageHandler;
-import protocol.MessageRouter;
+import transport.Channel;
+import util.ConsoleMute;
+import util.TrafficCapture;
 import java.io.IOException;
-import java.net.Socket;
-import java.util.concurrent.Semaphore;
 
 /**
  * Handles individual client connection lifecycle
  * Runs in separate thread per client
  */
 public class ClientHandler extends Thread {
-    private final Socket socket;
-    private final Semaphore clientSlot;
+    private final Channel channel;
+    private final SynqServer server;
+    private final long acceptedNanos = System.nanoTime();
     private ClientConnection client;
     private ClientSession session;
     private MessageHandler messageHandler;
     
-    public ClientHandler(Socket socket, Semaphore clientSlot) {
-        this.socket = socket;
-        this.clientSlot = clientSlot;
+    public ClientHandler(Channel channel, SynqServer server) {
+        this.channel = channel;
+        this.server = server;
     }
     
     @Override
     public void run() {
+        if (!server.options.logConnections) {
+            ConsoleMute.setMuted(true);
+        }
         try {
             // Setup connection
             setupConnection();
@@ -34,12 +36,29 @@ public class ClientHandler extends Thread {
             // Login phase
             session.performLogin();
             
-            // Key exchange phase
-            session.performKeyExchange();
+            // Key exchange phase (already done for combined handshake)
+            if (!client.isSecure()) {
+                session.performKeyExchange();
+            }
+            session.sendDeviceToken();
+            
+            TrafficCapture.record(TrafficCapture.LOGIN, client.username, null, 0);
+            server.recordReady(acceptedNanos);
+            
+            // Returning inbox user: partner hears first, then stored frames replay in order;
+            // live relays to this device are held until the replay is done
+            if (server.state.offlineSince.remove(client.username) != null) {
+                server.router.notifyPartner(client.username, "partner_online");
+            }
+            if (server.inbox != null) {
+                server.inbox.deliver(client);
+            }
+            server.deliveries.redeliver(client);
+            client.releaseBulk();
             
             // Message loop
             messageLoop();
-            
+        
         } catch (Exception e) {
             System.err.println("Client error: " + e.getMessage());
         } finally {
@@ -51,12 +70,13 @@ public class ClientHandler extends Thread {
      * Initializes connection and sets timeout
      */
     private void setupConnection() throws IOException {
-        socket.setSoTimeout(ServerConfig.SOCKET_TIMEOUT_MS);
-        client = new ClientConnection(socket);
-        session = new ClientSession(client);
-        messageHandler = new MessageHandler(client, session);
+        channel.setReadTimeout(server.options.readTimeoutMs);
+        client = new ClientConnection(channel);
+        client.holdBulk(); // Until stored frames have replayed
+        session = new ClientSession(client, server.state);
+        messageHandler = new MessageHandler(client, session, server);
         
-        System.out.println("→ Connection from: " + socket.getInetAddress());
+        System.out.println("→ Connection from: " + channel.getPeerAddress());
     }
     
     /**
@@ -66,16 +86,24 @@ public class ClientHandler extends Thread {
         System.out.println("✓ Ready: " + client.username);
         
         while (true) {
-            String encryptedLine = client.in.readLine();
+            LineReader.Frame frame = client.in.readFrame();
             
             // Check for disconnect
-            if (encryptedLine == null) {
+            if (frame == null) {
                 System.out.println("← Disconnect: " + client.username);
                 break;
             }
             
             // Process message
-            messageHandler.handleEncryptedMessage(encryptedLine);
+            client.stats.recordIn(frame.length());
+            if (frame.ciphertext != null) {
+                messageHandler.handleEncryptedMessage(frame.ciphertext);
+            } else {
+                messageHandler.handleEncryptedMessage(frame.line);
+            }
+            if (messageHandler.isDisconnectRequested()) {
+                break;
+            }
         }
     }
     
@@ -86,14 +114,22 @@ public class ClientHandler extends Thread {
         try {
             if (client != null && client.isAuthenticated()) {
                 String username = client.username;
+                TrafficCapture.record(TrafficCapture.DISCONNECT, username, null, 0);
                 
-                // Remove from user list
-                ServerState.users.remove(username);
-                
-                // Handle unbinding
-                String partner = BindManager.unbindUser(username);
-                if (partner != null) {
-                    MessageRouter.notifyPartnerDisconnected(username, partner);
+                // Remove device; bind belongs to the user and ends with the last device
+                // While draining, binds are kept for handoff to the next process
+                // Inbox pairs stay bound while the user is parked offline
+                if (server.state.removeDevice(username, client) && !server.isDraining()) {
+                    if (server.state.isParked(username)) {
+                        server.router.notifyPartner(username, "partner_offline");
+                    } else {
+                        String partner = server.binds.unbindUser(username);
+                        server.deliveries.forget(username);
+                        if (partner != null) {
+                            server.deliveries.forget(partner);
+                            server.router.notifyPartnerDisconnected(username, partner);
+                        }
+                    }
                 }
                 
                 System.out.println("✗ Cleanup: " + username);
@@ -103,14 +139,12 @@ public class ClientHandler extends Thread {
             if (client != null) {
                 client.close();
             }
-            
+        
         } catch (Exception e) {
             System.err.println("Cleanup error: " + e.getMessage());
         } finally {
             // Release connection slot
-            if (clientSlot != null) {
-                clientSlot.release();
-            }
+            server.releaseSlot();
         }
     }
 }
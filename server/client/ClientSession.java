@@ -1,18 +1,22 @@
 package client;
 
 import config.ServerConfig;
+import core.HandshakePool;
 import core.ServerState;
-import crypto.CryptoUtils;
+import crypto.CookieChallenge;
 import crypto.DHKeyExchange;
+import events.HandshakeEvent;
 import util.JsonUtils;
 import util.Validator;
 import com.google.gson.JsonObject;
 import javax.crypto.KeyAgreement;
+import javax.crypto.SecretKey;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Manages client lifecycle phases
@@ -20,9 +24,11 @@ import java.util.Map;
  */
 public class ClientSession {
     private final ClientConnection client;
+    private final ServerState state;
     
-    public ClientSession(ClientConnection client) {
+    public ClientSession(ClientConnection client, ServerState state) {
         this.client = client;
+        this.state = state;
     }
     
     /**
@@ -30,6 +36,51 @@ public class ClientSession {
      * Validates and registers username
      */
     public void performLogin() throws Exception {
+        HandshakeEvent event = beginHandshakeEvent("login");
+        boolean success = false;
+        try {
+            login();
+            success = true;
+        } finally {
+            endHandshakeEvent(event, client.isSecure() ? "combined" : "login", success);
+        }
+    }
+    
+    /**
+     * Handles Diffie-Hellman key exchange
+     * Establishes secure channel with AES-GCM
+     */
+    public void performKeyExchange() throws Exception {
+        HandshakeEvent event = beginHandshakeEvent("key_exchange");
+        boolean success = false;
+        try {
+            keyExchange();
+            success = true;
+        } finally {
+            endHandshakeEvent(event, "key_exchange", success);
+        }
+    }
+    
+    private HandshakeEvent beginHandshakeEvent(String phase) {
+        if (!ServerConfig.JFR_EVENTS_ENABLED) {
+            return null;
+        }
+        HandshakeEvent event = new HandshakeEvent();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+    
+    private void endHandshakeEvent(HandshakeEvent event, String phase, boolean success) {
+        if (event != null && event.shouldCommit()) {
+            event.phase = phase;
+            event.username = client.username;
+            event.success = success;
+            event.commit();
+        }
+    }
+    
+    private void login() throws Exception {
         String line = client.in.readLine();
         if (line == null) {
             throw new Exception("Client disconnected during login");
@@ -56,26 +107,96 @@ public class ClientSession {
             throw new Exception("Invalid username format: " + username);
         }
         
-        // Atomic check and register
-        if (ServerState.users.putIfAbsent(username, client) != null) {
-            sendPlainResponse("error", "username_taken");
-            throw new Exception("Username already taken: " + username);
+        // Combined handshake: client public key sent with login
+        PublicKey clientPublicKey = null;
+        if (JsonUtils.hasField(loginMsg, "publicKey")) {
+            try {
+                clientPublicKey = parseClientPublicKey(loginMsg.get("publicKey").getAsString());
+            } catch (Exception e) {
+                sendPlainResponse("error", "invalid_public_key");
+                throw new SecurityException("Invalid DH public key from client");
+            }
+        }
+        
+        // Cheap stateless check before any DH work
+        if (ServerConfig.COOKIE_CHALLENGE_ENABLED) {
+            performCookieChallenge();
+        }
+        
+        // Atomic check and register (further devices present the device token)
+        String deviceToken = JsonUtils.getString(loginMsg, "deviceToken", null);
+        String registerError = state.registerDevice(username, client, deviceToken);
+        if (registerError != null) {
+            sendPlainResponse("error", registerError);
+            throw new Exception("Login rejected (" + registerError + "): " + username);
         }
         
         client.username = username;
-        sendPlainResponse("success", "login_success");
+        
+        // Opt-in: listed in directory only when asked for
+        if ("true".equals(JsonUtils.getString(loginMsg, "discoverable", "false"))) {
+            state.addToDirectory(username);
+        }
+        
+        Map<String, String> response = new HashMap<>();
+        response.put("type", "success");
+        response.put("message", "login_success");
+        
+        if (clientPublicKey == null) {
+            client.out.println(JsonUtils.toJson(response));
+            System.out.println("✓ Login: " + username);
+            return;
+        }
+        
+        // Reply with server public key and login result together
+        KeyPair serverKeyPair = generateServerKeyPair();
+        response.put("publicKey", Base64.getEncoder().encodeToString(serverKeyPair.getPublic().getEncoded()));
+        
+        client.aesKey = completeKeyAgreement(serverKeyPair, clientPublicKey);
+        client.out.println(JsonUtils.toJson(response));
         
         System.out.println("✓ Login: " + username);
+        System.out.println("✓ Secure channel: " + client.username);
     }
     
     /**
-     * Handles Diffie-Hellman key exchange
-     * Establishes secure channel with AES-GCM
+     * Sends stateless cookie challenge and verifies the echoed response
+     * Puzzle difficulty rises with handshake queue depth
      */
-    public void performKeyExchange() throws Exception {
+    private void performCookieChallenge() throws Exception {
+        String peerAddress = client.channel.getPeerAddress();
+        int difficulty = CookieChallenge.difficultyFor(HandshakePool.getQueueDepth());
+        
+        Map<String, String> challenge = new HashMap<>();
+        challenge.put("type", "challenge");
+        String issued = CookieChallenge.issue(peerAddress, difficulty);
+        challenge.put("cookie", issued);
+        challenge.put("difficulty", String.valueOf(difficulty));
+        client.out.println(JsonUtils.toJson(challenge));
+        
+        String line = client.in.readLine();
+        if (line == null) {
+            throw new Exception("Client disconnected during challenge");
+        }
+        
+        JsonObject response = JsonUtils.parse(line);
+        if (!JsonUtils.hasRequiredFields(response, "type", "cookie") ||
+            !"challenge_response".equals(response.get("type").getAsString())) {
+            sendPlainResponse("error", "invalid_challenge_response");
+            throw new Exception("Invalid challenge response");
+        }
+        
+        String cookie = response.get("cookie").getAsString();
+        String nonce = JsonUtils.getString(response, "nonce", "");
+        if (!CookieChallenge.verify(peerAddress, issued, cookie, nonce)) {
+            sendPlainResponse("error", "challenge_failed");
+            throw new SecurityException("Cookie challenge failed");
+        }
+    }
+    
+    private void keyExchange() throws Exception {
         // Generate server DH keypair
-        KeyPair serverKeyPair = DHKeyExchange.generateKeyPair();
-        KeyAgreement keyAgreement = DHKeyExchange.initKeyAgreement(serverKeyPair.getPrivate());
+        KeyPair serverKeyPair = generateServerKeyPair();
         
         // Send server public key (Base64 encoded)
         byte[] serverPubBytes = serverKeyPair.getPublic().getEncoded();
@@ -87,6 +208,46 @@ public class ClientSession {
             throw new Exception("Client disconnected during key exchange");
         }
         
+        PublicKey clientPublicKey = parseClientPublicKey(clientPubStr);
+        
+        // Complete key agreement
+        client.aesKey = completeKeyAgreement(serverKeyPair, clientPublicKey);
+        
+        System.out.println("✓ Secure channel: " + client.username);
+    }
+    
+    /**
+     * Generates server DH keypair on the handshake pool
+     */
+    private KeyPair generateServerKeyPair() throws Exception {
+        try {
+            return HandshakePool.run(DHKeyExchange::generateKeyPair);
+        } catch (RejectedExecutionException e) {
+            sendPlainResponse("error", "server_busy");
+            throw new Exception("Handshake pool saturated");
+        }
+    }
+    
+    /**
+     * Completes key agreement on the handshake pool and derives AES key
+     */
+    private SecretKey completeKeyAgreement(KeyPair serverKeyPair, PublicKey clientPublicKey) throws Exception {
+        try {
+            return HandshakePool.run(() -> {
+                KeyAgreement keyAgreement = DHKeyExchange.initKeyAgreement(serverKeyPair.getPrivate());
+                keyAgreement.doPhase(clientPublicKey, true);
+                return DHKeyExchange.deriveAESKey(keyAgreement);
+            });
+        } catch (RejectedExecutionException e) {
+            sendPlainResponse("error", "server_busy");
+            throw new Exception("Handshake pool saturated");
+        }
+    }
+    
+    /**
+     * Decodes and validates client DH public key
+     */
+    private PublicKey parseClientPublicKey(String clientPubStr) throws Exception {
         byte[] clientPubBytes = Base64.getDecoder().decode(clientPubStr);
         PublicKey clientPublicKey = DHKeyExchange.parsePublicKey(clientPubBytes);
         
@@ -94,23 +255,29 @@ public class ClientSession {
         if (!DHKeyExchange.isValidPublicKey(clientPublicKey)) {
             throw new SecurityException("Invalid DH public key from client");
         }
-        
-        // Complete key agreement
-        keyAgreement.doPhase(clientPublicKey, true);
-        client.aesKey = DHKeyExchange.deriveAESKey(keyAgreement);
-        
-        System.out.println("✓ Secure channel: " + client.username);
+        return clientPublicKey;
+    }
+    
+    /**
+     * Sends device token as the first encrypted frame
+     * Never part of a plaintext response: it admits further devices and
+     * reclaims parked names
+     */
+    public void sendDeviceToken() throws Exception {
+        Map<String, String> message = new HashMap<>();
+        message.put("type", "device_token");
+        message.put("deviceToken", state.getDeviceToken(client.username));
+        sendEncrypted(JsonUtils.toJson(message));
     }
     
     /**
-     * Sends encrypted message to client
+     * Sends encrypted control message to client
      */
     public void sendEncrypted(String json) throws Exception {
         if (!client.isSecure()) {
             throw new IllegalStateException("Cannot send encrypted - no AES key");
         }
-        String encrypted = CryptoUtils.encrypt(client.aesKey, json);
-        client.out.println(encrypted);
+        client.sendEncrypted(json, OutboundQueue.Lane.CONTROL);
     }
     
     /**
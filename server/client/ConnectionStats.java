@@ -0,0 +1,90 @@
+package client;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Live traffic counters of one connection
+ * Inbound counters are only written by the connection's reader thread and
+ * outbound ones by whichever sender holds the drain, so updates never contend
+ * and readers see current values without pausing either side
+ */
+public class ConnectionStats {
+    public final long connectedAt = System.currentTimeMillis();
+    public final AtomicLong framesIn = new AtomicLong();
+    public final AtomicLong bytesIn = new AtomicLong();
+    public final AtomicLong framesOut = new AtomicLong();
+    public final AtomicLong bytesOut = new AtomicLong();
+    public final AtomicLong decryptFailures = new AtomicLong();
+    private volatile long lastActivity = connectedAt;
+    
+    /**
+     * Counts frame read from the client
+     */
+    public void recordIn(int bytes) {
+        framesIn.incrementAndGet();
+        bytesIn.addAndGet(bytes);
+        lastActivity = System.currentTimeMillis();
+    }
+    
+    /**
+     * Counts frame written to the client
+     */
+    public void recordOut(int bytes) {
+        framesOut.incrementAndGet();
+        bytesOut.addAndGet(bytes);
+        lastActivity = System.currentTimeMillis();
+    }
+    
+    /**
+     * Counts frame that failed decryption or authentication
+     */
+    public void recordDecryptFailure() {
+        decryptFailures.incrementAndGet();
+    }
+    
+    /**
+     * Gets milliseconds since last frame in either direction
+     */
+    public long getIdleMs() {
+        return System.currentTimeMillis() - lastActivity;
+    }
+    
+    /**
+     * Value connections can be ranked by
+     */
+    public enum Counter {
+        FRAMES_IN(client -> client.stats.framesIn.get()),
+        BYTES_IN(client -> client.stats.bytesIn.get()),
+        FRAMES_OUT(client -> client.stats.framesOut.get()),
+        BYTES_OUT(client -> client.stats.bytesOut.get()),
+        DECRYPT_FAILURES(client -> client.stats.decryptFailures.get()),
+        QUEUE_DEPTH(client -> client.outbound.getDepth(OutboundQueue.Lane.CONTROL) +
+            client.outbound.getDepth(OutboundQueue.Lane.BULK)),
+        BUFFERED_BYTES(client -> client.bufferedBytes.get()),
+        IDLE_MS(client -> client.stats.getIdleMs());
+        
+        private final ToLongFunction<ClientConnection> reader;
+        
+        Counter(ToLongFunction<ClientConnection> reader) {
+            this.reader = reader;
+        }
+        
+        public long read(ClientConnection client) {
+            return reader.applyAsLong(client);
+        }
+        
+        /**
+         * Looks up counter by name, e.g. "bytes_out"
+         * @return counter, or null if unknown
+         */
+        public static Counter parse(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
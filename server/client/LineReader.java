@@ -0,0 +1,168 @@
+package client;
+
+import config.ServerConfig;
+import transport.BinaryInput;
+import util.BufferPool;
+import util.ByteScan;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Line reader backed by pooled buffers
+ * Holds no buffer while waiting for the next line
+ */
+public class LineReader {
+    private final InputStream stream;
+    private final AtomicLong chargedBytes;
+    
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    
+    public LineReader(InputStream stream, AtomicLong chargedBytes) {
+        this.stream = stream;
+        this.chargedBytes = chargedBytes;
+    }
+    
+    /**
+     * Reads next frame: raw ciphertext if the stream delivered a binary
+     * message (WebSocket), otherwise a line
+     * @return frame, or null at end of stream
+     */
+    public Frame readFrame() throws IOException {
+        if (buffer == null && stream instanceof BinaryInput) {
+            byte[] ciphertext = ((BinaryInput) stream).readBinary();
+            if (ciphertext != null) {
+                return new Frame(null, ciphertext);
+            }
+        }
+        String line = readLine();
+        return line != null ? new Frame(line, null) : null;
+    }
+    
+    /**
+     * Reads next line (without terminator)
+     * @return line, or null at end of stream
+     */
+    public String readLine() throws IOException {
+        if (buffer == null) {
+            // Block without holding a buffer
+            int first = stream.read();
+            if (first == -1) {
+                return null;
+            }
+            borrow();
+            buffer[limit++] = (byte) first;
+        }
+        
+        int scanned = position;
+        while (true) {
+            int newline = ByteScan.indexOf(buffer, scanned, limit, (byte) '\n');
+            if (newline >= 0) {
+                return takeLine(newline);
+            }
+            scanned = limit;
+            
+            if (limit == buffer.length) {
+                scanned -= position;
+                makeRoom();
+            }
+            
+            int read = stream.read(buffer, limit, buffer.length - limit);
+            if (read == -1) {
+                giveBack();
+                return null;
+            }
+            limit += read;
+        }
+    }
+    
+    /**
+     * Extracts line ending at newline index and releases buffer when drained
+     */
+    private String takeLine(int newline) {
+        int end = newline;
+        if (end > position && buffer[end - 1] == '\r') {
+            end--;
+        }
+        String line = new String(buffer, position, end - position, StandardCharsets.UTF_8);
+        
+        position = newline + 1;
+        if (position == limit) {
+            giveBack();
+        }
+        return line;
+    }
+    
+    /**
+     * Compacts or grows buffer for a line longer than what is buffered
+     */
+    private void makeRoom() throws IOException {
+        int pending = limit - position;
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, pending);
+        } else {
+            if (buffer.length >= ServerConfig.MAX_LINE_BYTES) {
+                giveBack();
+                throw new IOException("Line exceeds " + ServerConfig.MAX_LINE_BYTES + " bytes");
+            }
+            byte[] larger = BufferPool.grow(buffer, pending, Math.min(buffer.length * 2, ServerConfig.MAX_LINE_BYTES));
+            if (larger == null) {
+                giveBack();
+                throw new IOException("Buffer budget exhausted");
+            }
+            chargedBytes.addAndGet(larger.length - buffer.length);
+            buffer = larger;
+        }
+        position = 0;
+        limit = pending;
+    }
+    
+    private void borrow() throws IOException {
+        buffer = BufferPool.acquire();
+        if (buffer == null) {
+            throw new IOException("Buffer budget exhausted");
+        }
+        position = 0;
+        limit = 0;
+        chargedBytes.addAndGet(buffer.length);
+    }
+    
+    private void giveBack() {
+        if (buffer != null) {
+            chargedBytes.addAndGet(-buffer.length);
+            BufferPool.release(buffer);
+            buffer = null;
+        }
+    }
+    
+    /**
+     * Closes stream and returns any held buffer
+     */
+    public void close() throws IOException {
+        giveBack();
+        stream.close();
+    }
+    
+    /**
+     * Inbound frame: a text line, or ciphertext that arrived as raw bytes
+     */
+    public static class Frame {
+        public final String line;
+        public final byte[] ciphertext;
+        
+        Frame(String line, byte[] ciphertext) {
+            this.line = line;
+            this.ciphertext = ciphertext;
+        }
+        
+        /**
+         * Gets length as a line, so both forms are charged alike
+         */
+        public int length() {
+            return line != null ? line.length() : LineWriter.encodedLength(ciphertext.length);
+        }
+    }
+}
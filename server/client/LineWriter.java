@@ -0,0 +1,133 @@
+package client;
+
+import transport.BinaryOutput;
+import util.BufferPool;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Line writer that encodes into a pooled buffer per write, or a transient
+ * array when the pool's budget is used up
+ * Like PrintWriter, never throws; failures are reported by checkError()
+ */
+public class LineWriter {
+    private final OutputStream stream;
+    private final AtomicLong chargedBytes;
+    private volatile boolean error;
+    
+    public LineWriter(OutputStream stream, AtomicLong chargedBytes) {
+        this.stream = stream;
+        this.chargedBytes = chargedBytes;
+    }
+    
+    /**
+     * Writes line with terminator and flushes
+     */
+    public synchronized void println(String line) {
+        byte[] buffer = borrow();
+        try {
+            int length = line.length();
+            if (buffer != null && length < buffer.length && isAscii(line)) {
+                // Fast path for Base64 and JSON frames
+                for (int i = 0; i < length; i++) {
+                    buffer[i] = (byte) line.charAt(i);
+                }
+                buffer[length] = '\n';
+                stream.write(buffer, 0, length + 1);
+            } else {
+                stream.write(line.getBytes(StandardCharsets.UTF_8));
+                stream.write('\n');
+            }
+            stream.flush();
+        } catch (IOException e) {
+            error = true;
+        } finally {
+            giveBack(buffer);
+        }
+    }
+    
+    /**
+     * Writes ciphertext as one frame: raw bytes where the stream carries
+     * binary messages (WebSocket), otherwise as a Base64 line
+     */
+    public synchronized void printCiphertext(byte[] ciphertext) {
+        if (stream instanceof BinaryOutput) {
+            try {
+                ((BinaryOutput) stream).writeBinary(ciphertext, 0, ciphertext.length);
+            } catch (IOException e) {
+                error = true;
+            }
+            return;
+        }
+        
+        byte[] buffer = borrow();
+        try {
+            int length = encodedLength(ciphertext.length);
+            if (buffer != null && length < buffer.length) {
+                Base64.getEncoder().encode(ciphertext, buffer);
+                buffer[length] = '\n';
+                stream.write(buffer, 0, length + 1);
+            } else {
+                stream.write(Base64.getEncoder().encode(ciphertext));
+                stream.write('\n');
+            }
+            stream.flush();
+        } catch (IOException e) {
+            error = true;
+        } finally {
+            giveBack(buffer);
+        }
+    }
+    
+    private byte[] borrow() {
+        byte[] buffer = BufferPool.acquire();
+        if (buffer != null) {
+            chargedBytes.addAndGet(buffer.length);
+        }
+        return buffer;
+    }
+    
+    private void giveBack(byte[] buffer) {
+        if (buffer != null) {
+            chargedBytes.addAndGet(-buffer.length);
+            BufferPool.release(buffer);
+        }
+    }
+    
+    /**
+     * Gets length of ciphertext as a Base64 line (without terminator)
+     */
+    public static int encodedLength(int ciphertextBytes) {
+        return (ciphertextBytes + 2) / 3 * 4;
+    }
+    
+    private static boolean isAscii(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Checks if any write has failed
+     */
+    public boolean checkError() {
+        return error;
+    }
+    
+    /**
+     * Closes underlying stream
+     */
+    public synchronized void close() {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            error = true;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package client;
+
+import config.ServerConfig;
+import events.BackpressureEvent;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-connection outbound frame queue with priority lanes
+ * Control frames are always written before queued bulk frames
+ * Whichever sender finds the queue idle drains it; others return immediately
+ */
+public class OutboundQueue {
+    private static final long SLOW_WRITE_THRESHOLD_NANOS = ServerConfig.SLOW_WRITE_THRESHOLD_MS * 1_000_000;
+    private static final long WRITE_STALL_NANOS = ServerConfig.OUTBOUND_WRITE_STALL_MS * 1_000_000;
+    
+    // Drains queues filled by threads that must never block on a socket
+    // Bounded: a consumer whose write stalls is dropped, which frees its writer
+    private static final AtomicInteger writerThreadId = new AtomicInteger();
+    private static final ExecutorService writers = Executors.newFixedThreadPool(
+        ServerConfig.OUTBOUND_WRITER_THREADS,
+        runnable -> {
+            Thread thread = new Thread(runnable, "outbound-writer-" + writerThreadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    );
+    
+    // Queues with a write in progress; the watchdog drops consumers stalled past the limit
+    private static final Set<OutboundQueue> writing = ConcurrentHashMap.newKeySet();
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+        runnable -> {
+            Thread thread = new Thread(runnable, "outbound-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        }
+    );
+    
+    static {
+        long period = Math.max(1, ServerConfig.OUTBOUND_WRITE_STALL_MS / 4);
+        watchdog.scheduleAtFixedRate(OutboundQueue::dropStalled, period, period, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Outbound priority class
+     */
+    public enum Lane {
+        CONTROL,
+        BULK
+    }
+    
+    private final ClientConnection client;
+    private final LaneQueue control = new LaneQueue();
+    private final LaneQueue bulk = new LaneQueue();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile long writeStartedNanos; // 0 while no write is in progress
+    
+    public OutboundQueue(ClientConnection client) {
+        this.client = client;
+    }
+    
+    /**
+     * Queues encrypted line on lane and drains if no other sender is
+     * @return false if bulk lane is full and the frame was dropped
+     */
+    public boolean send(Lane lane, String line) {
+        if (!offer(lane, line)) {
+            return false;
+        }
+        drain();
+        return true;
+    }
+    
+    /**
+     * Queues encrypted line on lane without writing it
+     * @return false if bulk lane is full and the frame was dropped
+     */
+    public boolean offer(Lane lane, String line) {
+        return offer(lane, new Frame(line, null, line.length(), System.nanoTime()));
+    }
+    
+    /**
+     * Queues raw ciphertext on lane without writing it; it is encoded (or
+     * not) only when written, as the channel requires
+     * @return false if bulk lane is full and the frame was dropped
+     */
+    public boolean offerCiphertext(Lane lane, byte[] ciphertext) {
+        return offer(lane, new Frame(null, ciphertext, LineWriter.encodedLength(ciphertext.length), System.nanoTime()));
+    }
+    
+    private boolean offer(Lane lane, Frame frame) {
+        LaneQueue queue = lane == Lane.CONTROL ? control : bulk;
+        if (lane == Lane.BULK && queue.depth.get() >= ServerConfig.OUTBOUND_BULK_LIMIT) {
+            BackpressureEvent.record("outbound_queue_full", client.toString(), 0);
+            return false;
+        }
+        
+        queue.frames.offer(frame);
+        queue.depth.incrementAndGet();
+        client.bufferedBytes.addAndGet(frame.length);
+        return true;
+    }
+    
+    /**
+     * Queues frame that must follow everything already queued on either lane,
+     * and precede everything queued later (e.g. the rekey frame)
+     * Pending bulk frames move ahead of it on the control lane
+     */
+    public void offerBarrier(byte[] ciphertext) {
+        Frame barrier = new Frame(null, ciphertext, LineWriter.encodedLength(ciphertext.length), System.nanoTime());
+        synchronized (this) {
+            Frame frame;
+            while ((frame = bulk.frames.poll()) != null) {
+                bulk.depth.decrementAndGet();
+                control.frames.offer(frame);
+                control.depth.incrementAndGet();
+            }
+            control.frames.offer(barrier);
+            control.depth.incrementAndGet();
+        }
+        client.bufferedBytes.addAndGet(barrier.length);
+    }
+    
+    /**
+     * Writes queued frames, control lane first
+     */
+    public void drain() {
+        while (draining.compareAndSet(false, true)) {
+            try {
+                Frame frame;
+                while ((frame = poll()) != null) {
+                    write(frame);
+                }
+            } finally {
+                draining.set(false);
+            }
+            
+            // Recheck for frames queued after the last poll
+            if (control.frames.isEmpty() && bulk.frames.isEmpty()) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Drains on a writer thread unless a drain is already running
+     * The running drain rechecks the queue before it stops, so nothing is stranded
+     */
+    public void drainAsync() {
+        if (!draining.get()) {
+            writers.execute(this::drain);
+        }
+    }
+    
+    /**
+     * Closes consumers whose write has blocked past the stall limit, which
+     * fails the write and frees the (bounded) writer thread
+     */
+    private static void dropStalled() {
+        long now = System.nanoTime();
+        for (OutboundQueue queue : writing) {
+            long started = queue.writeStartedNanos;
+            if (started != 0 && now - started > WRITE_STALL_NANOS) {
+                writing.remove(queue);
+                BackpressureEvent.record("stalled_consumer", queue.client.toString(), now - started);
+                System.err.println("✗ Dropping stalled consumer: " + queue.client);
+                queue.client.abort();
+            }
+        }
+    }
+    
+    /**
+     * Takes next frame; locked against a barrier moving frames between lanes
+     */
+    private synchronized Frame poll() {
+        Frame frame = control.take();
+        return frame != null ? frame : bulk.take();
+    }
+    
+    private void write(Frame frame) {
+        long start = System.nanoTime();
+        writeStartedNanos = start;
+        writing.add(this);
+        try {
+            if (frame.ciphertext != null) {
+                client.out.printCiphertext(frame.ciphertext);
+            } else {
+                client.out.println(frame.line);
+            }
+        } finally {
+            writeStartedNanos = 0;
+            writing.remove(this);
+        }
+        long elapsed = System.nanoTime() - start;
+        
+        client.bufferedBytes.addAndGet(-frame.length);
+        if (client.out.checkError()) {
+            // Peer is gone; closing the channel ends its reader, which cleans up
+            client.abort();
+            return;
+        }
+        client.stats.recordOut(frame.length);
+        if (elapsed > SLOW_WRITE_THRESHOLD_NANOS) {
+            BackpressureEvent.record("slow_consumer", client.toString(), elapsed);
+        }
+    }
+    
+    /**
+     * Gets frames waiting on a lane
+     */
+    public int getDepth(Lane lane) {
+        return (lane == Lane.CONTROL ? control : bulk).depth.get();
+    }
+    
+    /**
+     * Gets average queue wait on a lane in milliseconds
+     */
+    public double getAverageWaitMs(Lane lane) {
+        LaneQueue queue = lane == Lane.CONTROL ? control : bulk;
+        long sent = queue.sent.get();
+        return sent == 0 ? 0 : queue.totalWaitNanos.get() / (sent * 1_000_000.0);
+    }
+    
+    /**
+     * Gets longest queue wait on a lane in milliseconds
+     */
+    public double getMaxWaitMs(Lane lane) {
+        return (lane == Lane.CONTROL ? control : bulk).maxWaitNanos.get() / 1_000_000.0;
+    }
+    
+    /**
+     * Queue and wait statistics for one lane
+     */
+    private static class LaneQueue {
+        final ConcurrentLinkedQueue<Frame> frames = new ConcurrentLinkedQueue<>();
+        final AtomicInteger depth = new AtomicInteger();
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong totalWaitNanos = new AtomicLong();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+        
+        Frame take() {
+            Frame frame = frames.poll();
+            if (frame != null) {
+                long wait = System.nanoTime() - frame.enqueued;
+                depth.decrementAndGet();
+                sent.incrementAndGet();
+                totalWaitNanos.addAndGet(wait);
+                maxWaitNanos.accumulateAndGet(wait, Math::max);
+            }
+            return frame;
+        }
+    }
+    
+    /**
+     * Encrypted line or raw ciphertext with its length as a line and enqueue time
+     */
+    private static class Frame {
+        final String line;
+        final byte[] ciphertext;
+        final int length;
+        final long enqueued;
+        
+        Frame(String line, byte[] ciphertext, int length, long enqueued) {
+            this.line = line;
+            this.ciphertext = ciphertext;
+            this.length = length;
+            this.enqueued = enqueued;
+        }
+    }
+}
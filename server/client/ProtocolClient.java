@@ -0,0 +1,180 @@
+package client;
+
+import crypto.AESEncryption;
+import crypto.DHKeyExchange;
+import crypto.KeyRatchet;
+import crypto.PassthroughAuth;
+import transport.BinaryOutput;
+import transport.Channel;
+import util.JsonUtils;
+import com.google.gson.JsonObject;
+import javax.crypto.KeyAgreement;
+import javax.crypto.SecretKey;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+/**
+ * Minimal protocol client using the combined handshake
+ * Drives servers for warm-up, benchmarks and capture replay
+ */
+public class ProtocolClient {
+    public final String username;
+    private final Channel channel;
+    private final BufferedReader in;
+    private final PrintWriter out;
+    private final BinaryOutput binaryOut; // Set where ciphertext travels as raw bytes
+    private final String deviceToken;
+    private volatile SecretKey key;
+    
+    public ProtocolClient(Channel channel, String username) throws Exception {
+        this.channel = channel;
+        this.username = username;
+        in = new BufferedReader(new InputStreamReader(channel.getInputStream(), StandardCharsets.UTF_8));
+        out = new PrintWriter(new OutputStreamWriter(channel.getOutputStream(), StandardCharsets.UTF_8), true);
+        binaryOut = channel.getOutputStream() instanceof BinaryOutput ? (BinaryOutput) channel.getOutputStream() : null;
+        
+        KeyPair keyPair = DHKeyExchange.generateKeyPair();
+        Map<String, String> login = new HashMap<>();
+        login.put("type", "login");
+        login.put("username", username);
+        login.put("publicKey", Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+        out.println(JsonUtils.toJson(login));
+        
+        JsonObject response = JsonUtils.parse(in.readLine());
+        if (!JsonUtils.hasField(response, "publicKey")) {
+            channel.close();
+            throw new Exception("Login failed: " + response);
+        }
+        
+        KeyAgreement agreement = DHKeyExchange.initKeyAgreement(keyPair.getPrivate());
+        agreement.doPhase(DHKeyExchange.parsePublicKey(
+            Base64.getDecoder().decode(response.get("publicKey").getAsString())), true);
+        key = DHKeyExchange.deriveAESKey(agreement);
+        
+        // First encrypted frame carries the device token
+        JsonObject token = receive();
+        deviceToken = token != null ? JsonUtils.getString(token, "deviceToken", null) : null;
+    }
+    
+    public void send(String json) throws Exception {
+        if (binaryOut != null) {
+            byte[] ciphertext = AESEncryption.encryptRaw(key, json);
+            binaryOut.writeBinary(ciphertext, 0, ciphertext.length);
+        } else {
+            out.println(AESEncryption.encrypt(key, json));
+        }
+    }
+    
+    /**
+     * Requests keyless bind with target
+     */
+    public void bind(String target) throws Exception {
+        Map<String, String> msg = new HashMap<>();
+        msg.put("type", "bind_request");
+        msg.put("mode", "keyless");
+        msg.put("target", target);
+        send(JsonUtils.toJson(msg));
+    }
+    
+    /**
+     * Reads and decrypts next frame, following rekeys
+     * Passthrough frames are skipped
+     * @return message, or null once disconnected
+     */
+    public JsonObject receive() throws Exception {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isEmpty() || line.charAt(0) == PassthroughAuth.FRAME_PREFIX) {
+                continue;
+            }
+            JsonObject msg = JsonUtils.parse(AESEncryption.decrypt(key, line));
+            if ("rekey".equals(JsonUtils.getString(msg, "type", ""))) {
+                key = KeyRatchet.next(key, msg.get("epoch").getAsInt());
+            }
+            return msg;
+        }
+        return null;
+    }
+    
+    /**
+     * Reads frames until one of the given type arrives
+     */
+    public void awaitType(String type) throws Exception {
+        JsonObject msg;
+        while ((msg = receive()) != null) {
+            if (type.equals(JsonUtils.getString(msg, "type", ""))) {
+                return;
+            }
+        }
+        throw new Exception("Disconnected waiting for " + type);
+    }
+    
+    /**
+     * Reads in background so the server never blocks on this client,
+     * counting relayed chat messages if a latch is given
+     */
+    public void startDraining(CountDownLatch delivered) {
+        if (delivered != null) {
+            startReading(msg -> {
+                if ("message".equals(JsonUtils.getString(msg, "type", ""))) {
+                    delivered.countDown();
+                }
+            });
+            return;
+        }
+        
+        Thread reader = new Thread(() -> {
+            try {
+                while (in.readLine() != null) {
+                    // Discard without decrypting
+                }
+            } catch (Exception e) {
+                // Connection closed
+            }
+        }, "client-" + username);
+        reader.setDaemon(true);
+        reader.start();
+    }
+    
+    /**
+     * Passes every frame to handler on a background thread until disconnected
+     */
+    public void startReading(Consumer<JsonObject> handler) {
+        Thread reader = new Thread(() -> {
+            try {
+                JsonObject msg;
+                while ((msg = receive()) != null) {
+                    handler.accept(msg);
+                }
+            } catch (Exception e) {
+                // Connection closed
+            }
+        }, "client-" + username);
+        reader.setDaemon(true);
+        reader.start();
+    }
+    
+    /**
+     * Gets token that admits further devices of this user
+     */
+    public String getDeviceToken() {
+        return deviceToken;
+    }
+    
+    public void close() {
+        try {
+            channel.close();
+        } catch (Exception e) {
+            // Already closed
+        }
+    }
+}
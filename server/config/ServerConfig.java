@@ -1,5 +1,10 @@
 package config;
 
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 /**
  * Centralized server configuration
  * All constants and settings in one place
@@ -9,25 +14,151 @@ public class ServerConfig {
     public static final int PORT = 12345;
     public static final int MAX_CLIENTS = 10;
     
+    // Browser clients (WebSocket listener next to the TCP port, opt-in)
+    public static final boolean WEBSOCKET_ENABLED = Boolean.getBoolean("synq.websocket");
+    public static final int WEBSOCKET_PORT = 12346;
+    // Page origins allowed to upgrade, comma-separated; upgrades without Origin are non-browser clients
+    public static final Set<String> WEBSOCKET_ALLOWED_ORIGINS = Arrays.stream(
+            System.getProperty("synq.websocket.origins", "").split(","))
+        .map(origin -> origin.trim().toLowerCase(Locale.ROOT))
+        .filter(origin -> !origin.isEmpty())
+        .collect(Collectors.toUnmodifiableSet());
+    
+    public static final int MAX_DEVICES_PER_USER = 4;
+    
+    public static final int FANOUT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    
+    // Async relay: sender hands frames to the partner's outbound queue and returns (opt-in)
+    public static final boolean ASYNC_RELAY_ENABLED = Boolean.getBoolean("synq.async.relay");
+    
+    // Operator announcements (paced fan-out to every connection)
+    public static final int ANNOUNCE_RATE_PER_SEC = 20000;
+    public static final int ANNOUNCE_BATCH_SIZE = 500;
+    public static final int ANNOUNCE_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    public static final int ANNOUNCE_THREAD_PRIORITY = Thread.NORM_PRIORITY - 2;
+    public static final long ANNOUNCE_BATCH_TIMEOUT_MS = 5000;
+    
+    // Per-connection stats query
+    public static final int STATS_TOP_DEFAULT = 10;
+    public static final int STATS_TOP_MAX = 1000;
+    
     // Security settings
     public static final int DH_KEY_SIZE = 2048;
     public static final int AES_KEY_SIZE = 128;
     public static final int GCM_IV_LENGTH = 12;
     public static final int GCM_TAG_LENGTH = 128;
     
+    // Handshake crypto pool
+    public static final int HANDSHAKE_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    public static final int HANDSHAKE_QUEUE_CAPACITY = 256;
+    public static final int HANDSHAKE_THREAD_PRIORITY = Thread.NORM_PRIORITY - 2;
+    
+    // Pre-handshake cookie challenge
+    public static final boolean COOKIE_CHALLENGE_ENABLED = false;
+    public static final long COOKIE_LIFETIME_MS = 10000;
+    public static final int PUZZLE_QUEUE_THRESHOLD = 32;
+    public static final int MAX_PUZZLE_BITS = 20;
+    
+    // In-memory transport
+    public static final int MEMORY_PIPE_CAPACITY = 65536;
+    
+    // Warm start (handshakes and relays before the listener opens, opt-in)
+    public static final boolean WARM_START_ENABLED = Boolean.getBoolean("synq.warmup");
+    public static final int WARMUP_HANDSHAKES = 16;
+    public static final int WARMUP_MESSAGES = 10000;
+    public static final long WARMUP_TIMEOUT_MS = 15000;
+    
+    // Connection buffers
+    public static final int BUFFER_SIZE = 8192;
+    public static final long BUFFER_POOL_BUDGET_BYTES = 64L * 1024 * 1024;
+    public static final int MAX_LINE_BYTES = 65536;
+    
+    // In-session rekeying
+    public static final long REKEY_FRAME_LIMIT = 1_000_000;
+    public static final long REKEY_BYTE_LIMIT = 1L << 30;
+    public static final long REKEY_OVERLAP_MS = 5000;
+    
+    // Outbound priority lanes
+    public static final int OUTBOUND_BULK_LIMIT = 1024;
+    
+    // Writer threads for frames queued without writing (pair workers, announcements, presence)
+    public static final int OUTBOUND_WRITER_THREADS = Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+    public static final long OUTBOUND_WRITE_STALL_MS = 5000; // Write blocked this long: consumer is dropped
+    
+    // Inbound rate limits per connection (token buckets: rate and burst)
+    public static final double RATE_MESSAGES_PER_SEC = 50;
+    public static final long RATE_MESSAGE_BURST = 100;
+    public static final double RATE_ACKS_PER_SEC = RATE_MESSAGES_PER_SEC;  // At most one per frame from partner
+    public static final long RATE_ACK_BURST = RATE_MESSAGE_BURST;
+    public static final double RATE_BYTES_PER_SEC = 256 * 1024;
+    public static final long RATE_BYTE_BURST = 512 * 1024;
+    public static final double RATE_BINDS_PER_SEC = 0.2;
+    public static final long RATE_BIND_BURST = 5;
+    public static final double RATE_STRIKES_PER_SEC = 1;
+    public static final long RATE_STRIKE_BURST = 20;
+    
+    // Ephemeral presence signals
+    public static final long PRESENCE_TICK_MS = 100;
+    public static final int MAX_PRESENCE_VALUE_LENGTH = 64;
+    
     // Validation limits
     public static final int MIN_USERNAME_LENGTH = 3;
     public static final int MAX_USERNAME_LENGTH = 20;
     public static final int MAX_MESSAGE_LENGTH = 5000;
     public static final int MAX_JSON_SIZE = 10000;
+    public static final int MAX_BATCH_MESSAGES = 32;
+    // A batch shares one JSON frame, so a full batch caps each entry's text at an
+    // equal share less room for keys, message id and the sender name added on relay
+    public static final int BATCH_ENTRY_OVERHEAD = 112;
+    public static final int MAX_BATCH_TEXT_LENGTH = MAX_JSON_SIZE / MAX_BATCH_MESSAGES - BATCH_ENTRY_OVERHEAD;
+    public static final int MAX_MESSAGE_ID_LENGTH = 64;
+    
+    // Acknowledged delivery (messages sent with an id)
+    public static final int DELIVERY_WINDOW = 64;
+    public static final int DELIVERY_RECENT_IDS = 256;
+    
+    // Online-user directory
+    public static final int DIRECTORY_PAGE_SIZE = 20;
+    public static final int DIRECTORY_MAX_PAGE_SIZE = 50;
     
     // Timeouts
     public static final int SOCKET_TIMEOUT_MS = 30000;
     public static final long BIND_TIMEOUT_MS = 60000;
     
+    // Graceful drain and state handoff
+    public static final boolean GRACEFUL_DRAIN = true;
+    public static final long DRAIN_TIMEOUT_MS = 5000;
+    public static final long DRAIN_RECONNECT_MIN_MS = 1000;
+    public static final long DRAIN_RECONNECT_MAX_MS = 30000;
+    public static final String HANDOFF_STATE_FILE = System.getProperty("synq.handoff.file", "synq-handoff.json");
+    public static final long HANDOFF_MAX_AGE_MS = 60000;
+    public static final long HANDOFF_RECLAIM_MS = DRAIN_RECONNECT_MAX_MS + 30000;
+    
+    // Offline inbox (durable log for opted-in pairs)
+    public static final String INBOX_DIR = "synq-inbox";
+    public static final String INBOX_SECRET_FILE = "inbox.key";
+    public static final int INBOX_SECRET_BYTES = 32;
+    public static final long INBOX_STORE_WAIT_MS = 1000;
+    public static final int INBOX_SEGMENT_BYTES = 8 * 1024 * 1024;
+    public static final long INBOX_COMMIT_DELAY_MS = 2;
+    public static final long INBOX_RETENTION_MS = 7L * 24 * 60 * 60 * 1000;
+    public static final long INBOX_SWEEP_MS = 60000;
+    
+    // Traffic capture
+    public static final boolean CAPTURE_ENABLED = false;
+    public static final String CAPTURE_FILE = "synq-capture.bin";
+    public static final int CAPTURE_QUEUE_CAPACITY = 65536;
+    
+    // Vector API byte scans (-Dsynq.simd=true, needs the SIMD build and --add-modules jdk.incubator.vector)
+    public static final boolean SIMD_SCAN_ENABLED = Boolean.getBoolean("synq.simd");
+    
     // Logging
     public static final boolean DEBUG_MODE = true;
     
+    // Flight Recorder events
+    public static final boolean JFR_EVENTS_ENABLED = false;
+    public static final long SLOW_WRITE_THRESHOLD_MS = 100;
+    
     private ServerConfig() {
         // Prevent instantiation
     }
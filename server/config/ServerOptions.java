@@ -0,0 +1,61 @@
+package config;
+
+/**
+ * Settings of one server instance
+ * Protocol limits stay in ServerConfig; these vary per deployment or test
+ */
+public class ServerOptions {
+    public final int maxClients;
+    public final int readTimeoutMs;
+    public final boolean rateLimitEnabled;
+    
+    // State handoff file (holds device tokens), null to disable
+    public final String handoffFile;
+    
+    // Offline inbox directory, null to disable
+    public final String inboxDir;
+    
+    // Sender only encrypts and queues relays; outbound writer threads write them
+    public final boolean asyncRelay;
+    
+    // Print per-connection events; off for the warm-up instance
+    public final boolean logConnections;
+    
+    public ServerOptions(int maxClients, int readTimeoutMs, String handoffFile,
+                         boolean rateLimitEnabled, String inboxDir, boolean asyncRelay,
+                         boolean logConnections) {
+        this.maxClients = maxClients;
+        this.readTimeoutMs = readTimeoutMs;
+        this.handoffFile = handoffFile;
+        this.rateLimitEnabled = rateLimitEnabled;
+        this.inboxDir = inboxDir;
+        this.asyncRelay = asyncRelay;
+        this.logConnections = logConnections;
+    }
+    
+    /**
+     * Options of the standalone server
+     */
+    public static ServerOptions defaults() {
+        return new ServerOptions(ServerConfig.MAX_CLIENTS, ServerConfig.SOCKET_TIMEOUT_MS, ServerConfig.HANDOFF_STATE_FILE, true,
+            ServerConfig.INBOX_DIR,
+            ServerConfig.ASYNC_RELAY_ENABLED, true);
+    }
+    
+    /**
+     * Options for embedded instances (warm-up, benchmarks): no handoff file
+     * or inbox shared with other processes and no inbound rate limits
+     */
+    public static ServerOptions embedded(int maxClients) {
+        return new ServerOptions(maxClients, ServerConfig.SOCKET_TIMEOUT_MS, null, false, null,
+            ServerConfig.ASYNC_RELAY_ENABLED, true);
+    }
+    
+    /**
+     * Options of the warm-up instance: embedded, without per-connection logging
+     */
+    public static ServerOptions warmUp(int maxClients) {
+        return new ServerOptions(maxClients, ServerConfig.SOCKET_TIMEOUT_MS, null, false, null,
+            ServerConfig.ASYNC_RELAY_ENABLED, false);
+    }
+}
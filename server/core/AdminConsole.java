@@ -0,0 +1,116 @@
+package core;
+
+import client.ConnectionStats;
+import config.ServerConfig;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Operator commands read from the server's standard input
+ * Prints the server reports and triggers announcements
+ */
+public class AdminConsole {
+    private final SynqServer server;
+    
+    public AdminConsole(SynqServer server) {
+        this.server = server;
+    }
+    
+    /**
+     * Starts reading commands on a daemon thread; stops at end of input
+     */
+    public void start() {
+        Thread thread = new Thread(this::readLoop, "admin-console");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void readLoop() {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    System.out.println(execute(line.trim()));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Admin console stopped: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Runs one command
+     * @return output to print
+     */
+    public String execute(String line) {
+        int space = line.indexOf(' ');
+        String command = space < 0 ? line : line.substring(0, space);
+        String argument = space < 0 ? "" : line.substring(space + 1).trim();
+        
+        switch (command) {
+            case "status":
+                return server.getStatus();
+            case "memory":
+                return server.getMemoryReport();
+            case "outbound":
+                return server.getOutboundReport();
+            case "ratelimits":
+                return server.getRateLimitReport();
+            case "inbox":
+                return server.getInboxReport();
+            case "top":
+                return top(argument);
+            case "announce":
+                return announce(argument);
+            case "help":
+                return "Commands: status, memory, outbound, ratelimits, inbox, top [counter] [n], " +
+                    "announce <text>, announce status, announce cancel";
+            default:
+                return "✗ Unknown command: " + command + " (try help)";
+        }
+    }
+    
+    /**
+     * Ranks connections, e.g. "top decrypt_failures 5"
+     */
+    private String top(String argument) {
+        String[] parts = argument.isEmpty() ? new String[0] : argument.split("\\s+");
+        ConnectionStats.Counter counter = parts.length > 0
+            ? ConnectionStats.Counter.parse(parts[0])
+            : ConnectionStats.Counter.BYTES_OUT;
+        if (counter == null) {
+            return "✗ Unknown counter: " + parts[0] + " (one of " +
+                Arrays.toString(ConnectionStats.Counter.values()).toLowerCase() + ")";
+        }
+        
+        int limit = ServerConfig.STATS_TOP_DEFAULT;
+        if (parts.length > 1) {
+            try {
+                limit = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                return "✗ Invalid count: " + parts[1];
+            }
+        }
+        return server.getConnectionReport(counter, Math.min(limit, ServerConfig.STATS_TOP_MAX));
+    }
+    
+    private String announce(String argument) {
+        if (argument.equals("status")) {
+            return server.getAnnouncementReport();
+        }
+        if (argument.equals("cancel")) {
+            if (server.announcer.getCurrent() == null || server.announcer.getCurrent().isFinished()) {
+                return "✗ No announcement in progress";
+            }
+            server.announcer.getCurrent().cancel();
+            return "→ Cancelling announcement";
+        }
+        
+        String error = server.announce(argument);
+        return error == null ? "→ Announcement queued" : "✗ Announcement rejected: " + error;
+    }
+}
@@ -0,0 +1,130 @@
+package core;
+
+import config.ServerConfig;
+import events.BackpressureEvent;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded worker pool for handshake crypto
+ * Keeps DH work off the threads that relay chat traffic
+ */
+public class HandshakePool {
+    private static volatile ThreadPoolExecutor executor;
+    
+    // Wait time statistics
+    private static final AtomicLong completedTasks = new AtomicLong();
+    private static final AtomicLong totalWaitNanos = new AtomicLong();
+    private static final AtomicLong maxWaitNanos = new AtomicLong();
+    private static final AtomicLong rejectedTasks = new AtomicLong();
+    
+    /**
+     * Starts handshake worker threads
+     * Pool is shared by every server instance in the JVM; later calls are no-ops
+     */
+    public static synchronized void init() {
+        if (executor != null && !executor.isShutdown()) {
+            return;
+        }
+        
+        AtomicInteger threadId = new AtomicInteger();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(
+            ServerConfig.HANDSHAKE_THREADS,
+            ServerConfig.HANDSHAKE_THREADS,
+            0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(ServerConfig.HANDSHAKE_QUEUE_CAPACITY),
+            runnable -> {
+                Thread thread = new Thread(runnable, "handshake-" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(ServerConfig.HANDSHAKE_THREAD_PRIORITY);
+                return thread;
+            },
+            (runnable, pool) -> {
+                rejectedTasks.incrementAndGet();
+                BackpressureEvent.record("handshake_rejected", Thread.currentThread().getName(), 0);
+                throw new RejectedExecutionException("Handshake queue full");
+            }
+        );
+        executor = workers; // Published fully built
+        
+        System.out.println("✓ Handshake pool initialized (" + ServerConfig.HANDSHAKE_THREADS + " threads)");
+    }
+    
+    /**
+     * Runs crypto task on the pool and waits for result
+     * @throws RejectedExecutionException if queue is full
+     */
+    public static <T> T run(Callable<T> task) throws Exception {
+        long enqueued = System.nanoTime();
+        Future<T> future = executor.submit(() -> {
+            recordWait(System.nanoTime() - enqueued);
+            return task.call();
+        });
+        
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Records time a task spent queued
+     */
+    private static void recordWait(long waitNanos) {
+        completedTasks.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+    
+    /**
+     * Stops worker threads
+     */
+    public static void shutdown() {
+        ThreadPoolExecutor pool = executor;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+    
+    /**
+     * Gets number of tasks waiting for a worker
+     */
+    public static int getQueueDepth() {
+        ThreadPoolExecutor pool = executor;
+        return pool != null ? pool.getQueue().size() : 0;
+    }
+    
+    /**
+     * Gets average queue wait in milliseconds
+     */
+    public static double getAverageWaitMs() {
+        long completed = completedTasks.get();
+        return completed == 0 ? 0 : totalWaitNanos.get() / (completed * 1_000_000.0);
+    }
+    
+    /**
+     * Gets longest queue wait in milliseconds
+     */
+    public static double getMaxWaitMs() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+    
+    /**
+     * Gets number of rejected handshake tasks
+     */
+    public static long getRejectedCount() {
+        return rejectedTasks.get();
+    }
+}
@@ -1,38 +1,101 @@
 package core;
 
-import client.ClientHandler;
 import config.ServerConfig;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.Semaphore;
+import config.ServerOptions;
+import transport.CompositeTransport;
+import transport.TcpTransport;
+import transport.Transport;
+import transport.WebSocketTransport;
+import util.ByteScan;
+import util.TrafficCapture;
+import java.lang.management.ManagementFactory;
 
 /**
  * Main server entry point
- * Accepts connections and spawns client handlers
+ * Runs one server instance on a TCP port, plus a WebSocket port for browsers
+ *
+ * Usage: java core.MainServer [port | --warmup-only]
+ * --warmup-only runs warm-up and exits, as the training run for the
+ * class-data-sharing archive (see README)
+ *
+ * Warm start before the listener opens: -Dsynq.warmup=true
+ *
+ * Vector API byte scans: build simd/ as well (see README), then run with
+ * --add-modules jdk.incubator.vector and -Dsynq.simd=true
+ *
+ * Drain handoff file: -Dsynq.handoff.file=<path> (default synq-handoff.json)
+ *
+ * Async relay hand-off: -Dsynq.async.relay=true
  */
 public class MainServer {
-    private static final Semaphore clientSlots = new Semaphore(ServerConfig.MAX_CLIENTS);
+    private static SynqServer server;
     
     public static void main(String[] args) {
-        printBanner();
-        ServerState.init();
+        if (args.length > 0 && "--warmup-only".equals(args[0])) {
+            HandshakePool.init();
+            WarmUp.Result warmUp = WarmUp.run();
+            System.out.println("✓ Warm-up finished in " + warmUp.elapsedMs + "ms");
+            HandshakePool.shutdown();
+            return;
+        }
+        
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : ServerConfig.PORT;
+        ServerOptions options = ServerOptions.defaults();
+        
+        // Warm up before the listener opens so first clients get compiled paths
+        HandshakePool.init();
+        WarmUp.Result warmUp = ServerConfig.WARM_START_ENABLED ? WarmUp.run() : null;
+        
+        // Native and browser clients share one instance, so they can bind to each other
+        Transport transport = ServerConfig.WEBSOCKET_ENABLED
+            ? new CompositeTransport(new TcpTransport(port), new WebSocketTransport(ServerConfig.WEBSOCKET_PORT))
+            : new TcpTransport(port);
+        server = new SynqServer(options, transport);
+        startCapture();
         setupShutdownHook();
-        startServer();
+        if (startServer()) {
+            printBanner(port, options, warmUp);
+            new AdminConsole(server).start();
+        }
     }
     
     /**
      * Prints server startup banner
      */
-    private static void printBanner() {
-        System.out.println("═══════════════════════════════════════");
+    private static void printBanner(int port, ServerOptions options, WarmUp.Result warmUp) {
+        System.out.println("\n═══════════════════════════════════════");
         System.out.println("        Synq Secure Chat Server");
         System.out.println("═══════════════════════════════════════");
-        System.out.println("  Port:        " + ServerConfig.PORT);
-        System.out.println("  Max Clients: " + ServerConfig.MAX_CLIENTS);
+        System.out.println("  Port:        " + port);
+        if (ServerConfig.WEBSOCKET_ENABLED) {
+            System.out.println("  WebSocket:   " + ServerConfig.WEBSOCKET_PORT);
+        }
+        System.out.println("  Max Clients: " + options.maxClients);
         System.out.println("  Encryption:  AES-GCM + DH Key Exchange");
+        System.out.println("  Byte scans:  " + ByteScan.getKernel().describe());
+        System.out.println("  Handshake:   " + ServerConfig.HANDSHAKE_THREADS + " threads, queue " + ServerConfig.HANDSHAKE_QUEUE_CAPACITY);
+        System.out.println("  Ready in:    " + ManagementFactory.getRuntimeMXBean().getUptime() + "ms since JVM start");
+        if (warmUp != null) {
+            System.out.printf("  Warm-up:     %dms, first connection %.1fms cold -> %.1fms warm%n",
+                warmUp.elapsedMs, warmUp.coldConnectMs, warmUp.warmConnectMs);
+        }
         System.out.println("═══════════════════════════════════════\n");
     }
     
+    /**
+     * Starts traffic capture if enabled
+     */
+    private static void startCapture() {
+        if (!ServerConfig.CAPTURE_ENABLED) {
+            return;
+        }
+        try {
+            TrafficCapture.start();
+        } catch (Exception e) {
+            System.err.println("✗ Traffic capture unavailable: " + e.getMessage());
+        }
+    }
+    
     /**
      * Registers shutdown hook for clean exit
      */
@@ -41,7 +104,12 @@ public class MainServer {
             System.out.println("\n\n═══════════════════════════════════════");
             System.out.println("        Server Shutdown Initiated");
             System.out.println("═══════════════════════════════════════");
-            ServerState.shutdown();
+            if (ServerConfig.GRACEFUL_DRAIN && server.isRunning()) {
+                server.drain();
+            }
+            server.stop();
+            HandshakePool.shutdown();
+            TrafficCapture.stop();
             System.out.println("═══════════════════════════════════════");
             System.out.println("        Shutdown Complete");
             System.out.println("═══════════════════════════════════════\n");
@@ -49,63 +117,24 @@ public class MainServer {
     }
     
     /**
-     * Starts server and accepts connections
+     * Starts server instance
+     * @return true once listening
      */
-    private static void startServer() {
-        try (ServerSocket serverSocket = new ServerSocket(ServerConfig.PORT)) {
-            System.out.println("✓ Server started successfully!\n");
-            System.out.println("Listening for connections...\n");
-            
-            acceptConnections(serverSocket);
-            
+    private static boolean startServer() {
+        try {
+            server.start();
+            return true;
         } catch (Exception e) {
             System.err.println("✗ Server error: " + e.getMessage());
             e.printStackTrace();
+            return false;
         }
     }
     
     /**
-     * Main connection acceptance loop
-     */
-    private static void acceptConnections(ServerSocket serverSocket) {
-        while (true) {
-            try {
-                Socket clientSocket = serverSocket.accept();
-                
-                // Try to acquire connection slot
-                if (clientSlots.tryAcquire()) {
-                    // Slot available - accept client
-                    System.out.println("→ Accepting connection from: " + 
-                        clientSocket.getInetAddress() + 
-                        " [" + (ServerConfig.MAX_CLIENTS - clientSlots.availablePermits()) + 
-                        "/" + ServerConfig.MAX_CLIENTS + "]");
-                    
-                    ClientHandler handler = new ClientHandler(clientSocket, clientSlots);
-                    handler.start();
-                    
-                } else {
-                    // Server full - reject
-                    System.out.println("✗ Connection rejected (server full): " + 
-                        clientSocket.getInetAddress());
-                    clientSocket.close();
-                }
-                
-            } catch (Exception e) {
-                System.err.println("Error accepting connection: " + e.getMessage());
-            }
-        }
-    }
-    
-    /**
-     * Gets current server status
+     * Gets the running server instance
      */
-    public static String getStatus() {
-        return String.format(
-            "Users: %d | Binds: %d | Slots: %d/%d",
-            ServerState.getUserCount(),
-            ServerState.getActiveBindCount(),
-            (ServerConfig.MAX_CLIENTS - clientSlots.availablePermits()),
-            ServerConfig.MAX_CLIENTS
-        );
+    public static SynqServer getServer() {
+        return server;
     }
 }
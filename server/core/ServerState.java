@@ -1,49 +1,81 @@
 package core;
 
 import client.ClientConnection;
+import client.ConnectionStats;
+import config.ServerConfig;
+import crypto.CryptoUtils;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
 
 /**
- * Thread-safe global server state
+ * Thread-safe state of one server instance
  * Manages users, bindings, and waiting lists
  */
 public class ServerState {
-    // Active user connections
-    public static ConcurrentHashMap<String, ClientConnection> users;
+    // Active users: username -> connected devices
+    public final ConcurrentHashMap<String, UserDevices> users;
     
     // Keyless bind waiting list: username -> target
-    public static ConcurrentHashMap<String, String> waitingKeyless;
+    public final ConcurrentHashMap<String, String> waitingKeyless;
     
     // Keyed bind waiting list
-    public static CopyOnWriteArrayList<KeyEntry> waitingKeyed;
+    public final CopyOnWriteArrayList<KeyEntry> waitingKeyed;
     
     // Active bound pairs: username -> partner
-    public static ConcurrentHashMap<String, String> activePairs;
+    public final ConcurrentHashMap<String, String> activePairs;
+    
+    // Users who opted their bound pair into end-to-end passthrough
+    public final Set<String> passthroughUsers;
+    
+    // Users who opted their bound pair into the offline inbox
+    public final Set<String> inboxUsers;
+    
+    // Inbox users kept bound while offline: username -> since (ms)
+    public final ConcurrentHashMap<String, Long> offlineSince;
+    
+    // Device tokens reserved for users handed off or offline: username -> token
+    public final ConcurrentHashMap<String, String> reservedTokens;
+    
+    // Online users who opted into discovery, sorted for prefix search
+    public final ConcurrentSkipListSet<String> directory;
     
     /**
      * Initializes all server state collections
      */
-    public static void init() {
+    public ServerState() {
         users = new ConcurrentHashMap<>();
         waitingKeyless = new ConcurrentHashMap<>();
         waitingKeyed = new CopyOnWriteArrayList<>();
         activePairs = new ConcurrentHashMap<>();
-        
-        System.out.println("✓ Server state initialized");
+        passthroughUsers = ConcurrentHashMap.newKeySet();
+        inboxUsers = ConcurrentHashMap.newKeySet();
+        offlineSince = new ConcurrentHashMap<>();
+        reservedTokens = new ConcurrentHashMap<>();
+        directory = new ConcurrentSkipListSet<>();
     }
     
     /**
      * Shuts down server and closes all connections
      */
-    public static void shutdown() {
+    public void shutdown() {
         System.out.println("\nShutting down server...");
         
         // Close all client connections
-        users.values().forEach(client -> {
+        getAllConnections().forEach(client -> {
             try {
-                if (client.socket != null && !client.socket.isClosed()) {
-                    client.socket.close();
+                if (!client.channel.isClosed()) {
+                    client.channel.close();
                 }
             } catch (Exception e) {
                 System.err.println("Error closing client: " + e.getMessage());
@@ -55,24 +87,265 @@ public class ServerState {
         waitingKeyless.clear();
         waitingKeyed.clear();
         activePairs.clear();
+        passthroughUsers.clear();
+        inboxUsers.clear();
+        offlineSince.clear();
+        reservedTokens.clear();
+        directory.clear();
         
         System.out.println("✓ All connections closed");
     }
     
+    /**
+     * Registers device connection for username atomically
+     * First device creates the user; later devices must present its token
+     * Usernames handed off by a previous process stay reserved for their token
+     * @return null on success, otherwise error code
+     */
+    public String registerDevice(String username, ClientConnection client, String deviceToken) {
+        UserDevices entry = users.compute(username, (name, existing) -> {
+            if (existing == null) {
+                String reserved = reservedTokens.get(name);
+                if (reserved == null) {
+                    return new UserDevices(client, CryptoUtils.randomToken());
+                }
+                if (deviceToken == null || !CryptoUtils.constantTimeEquals(reserved, deviceToken)) {
+                    return null;
+                }
+                reservedTokens.remove(name);
+                return new UserDevices(client, reserved);
+            }
+            if (deviceToken != null &&
+                CryptoUtils.constantTimeEquals(existing.deviceToken, deviceToken) &&
+                existing.devices.size() < ServerConfig.MAX_DEVICES_PER_USER) {
+                existing.devices.add(client);
+            }
+            return existing;
+        });
+        
+        if (entry == null) {
+            return "username_taken";
+        }
+        if (entry.devices.contains(client)) {
+            return null;
+        }
+        if (deviceToken == null || !CryptoUtils.constantTimeEquals(entry.deviceToken, deviceToken)) {
+            return "username_taken";
+        }
+        return "too_many_devices";
+    }
+    
+    /**
+     * Removes device connection atomically
+     * User leaves the directory with their last device; inbox users are
+     * parked instead, their name reserved for their token while offline
+     * @return true if this was the user's last device
+     */
+    public boolean removeDevice(String username, ClientConnection client) {
+        boolean[] lastDevice = new boolean[1];
+        users.computeIfPresent(username, (name, entry) -> {
+            entry.devices.remove(client);
+            lastDevice[0] = entry.devices.isEmpty();
+            if (lastDevice[0]) {
+                directory.remove(name);
+                if (isInboxPair(name)) {
+                    reservedTokens.put(name, entry.deviceToken);
+                    offlineSince.put(name, System.currentTimeMillis());
+                }
+            }
+            return lastDevice[0] ? null : entry;
+        });
+        return lastDevice[0];
+    }
+    
+    /**
+     * Checks if user and their partner both opted into the offline inbox
+     */
+    public boolean isInboxPair(String username) {
+        String partner = activePairs.get(username);
+        return partner != null && inboxUsers.contains(username) && inboxUsers.contains(partner);
+    }
+    
+    /**
+     * Checks if user is offline but kept bound for their inbox
+     */
+    public boolean isParked(String username) {
+        return offlineSince.containsKey(username);
+    }
+    
+    /**
+     * Lists online user in the directory
+     * Runs under the user's map entry so it cannot race the last device leaving
+     */
+    public void addToDirectory(String username) {
+        users.computeIfPresent(username, (name, entry) -> {
+            directory.add(name);
+            return entry;
+        });
+    }
+    
+    /**
+     * Gets page of discoverable users starting with prefix, in name order
+     * @param after last name of previous page, or null for first page
+     */
+    public List<String> queryDirectory(String prefix, String after, int limit) {
+        boolean firstPage = after == null || after.compareTo(prefix) < 0;
+        NavigableSet<String> range = directory.subSet(
+            firstPage ? prefix : after, firstPage, prefix + Character.MAX_VALUE, false);
+        
+        List<String> page = new ArrayList<>(limit);
+        for (String username : range) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(username);
+        }
+        return page;
+    }
+    
+    /**
+     * Gets connected devices of user (empty if offline)
+     */
+    public List<ClientConnection> getDevices(String username) {
+        UserDevices entry = users.get(username);
+        return entry != null ? entry.devices : Collections.emptyList();
+    }
+    
+    /**
+     * Gets device token of online user
+     */
+    public String getDeviceToken(String username) {
+        UserDevices entry = users.get(username);
+        return entry != null ? entry.deviceToken : null;
+    }
+    
+    /**
+     * Gets every connected device of every user
+     */
+    public List<ClientConnection> getAllConnections() {
+        return users.values().stream()
+            .flatMap(entry -> entry.devices.stream())
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Counts connected devices without collecting them
+     */
+    public int getAllConnectionCount() {
+        int count = 0;
+        for (UserDevices entry : users.values()) {
+            count += entry.devices.size();
+        }
+        return count;
+    }
+    
+    /**
+     * Gets device tokens of all online users
+     */
+    public Map<String, String> getDeviceTokens() {
+        Map<String, String> tokens = new HashMap<>(reservedTokens);
+        users.forEach((username, entry) -> tokens.put(username, entry.deviceToken));
+        return tokens;
+    }
+    
     /**
      * Gets current user count
      */
-    public static int getUserCount() {
+    public int getUserCount() {
         return users.size();
     }
     
     /**
      * Gets current bind count
      */
-    public static int getActiveBindCount() {
+    public int getActiveBindCount() {
         return activePairs.size() / 2; // Each bind counts twice
     }
     
+    /**
+     * Gets connections holding the most buffered bytes
+     */
+    public List<ClientConnection> getHeaviestConnections(int limit) {
+        List<ClientConnection> heaviest = getTopConnections(ConnectionStats.Counter.BUFFERED_BYTES, limit);
+        heaviest.removeIf(client -> client.bufferedBytes.get() == 0);
+        return heaviest;
+    }
+    
+    /**
+     * Gets connections with the highest value of a counter, highest first
+     * Walks live devices keeping only the current top entries in a small heap,
+     * so relays keep running and nothing beyond the result is copied
+     */
+    public List<ClientConnection> getTopConnections(ConnectionStats.Counter counter, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        
+        // Min-heap of (value, connection); root is the entry to beat
+        PriorityQueue<Ranked> top = new PriorityQueue<>(limit + 1, Comparator.comparingLong(ranked -> ranked.value));
+        for (UserDevices entry : users.values()) {
+            for (ClientConnection client : entry.devices) {
+                long value = counter.read(client);
+                if (top.size() < limit) {
+                    top.add(new Ranked(value, client));
+                } else if (value > top.peek().value) {
+                    top.poll();
+                    top.add(new Ranked(value, client));
+                }
+            }
+        }
+        
+        List<ClientConnection> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(top.poll().client);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+    
+    /**
+     * Describes bind state of a user: bound partner, waiting or unbound
+     */
+    public String describeBind(String username) {
+        String partner = activePairs.get(username);
+        if (partner != null) {
+            return "bound to " + partner;
+        }
+        if (waitingKeyless.containsKey(username) ||
+            waitingKeyed.stream().anyMatch(entry -> entry.userA.equals(username) || entry.userB.equals(username))) {
+            return "bind pending";
+        }
+        return "unbound";
+    }
+    
+    /**
+     * Connection with the counter value it was ranked by
+     */
+    private static class Ranked {
+        final long value;
+        final ClientConnection client;
+        
+        Ranked(long value, ClientConnection client) {
+            this.value = value;
+            this.client = client;
+        }
+    }
+    
+    /**
+     * Connected devices of one user
+     * Device token lets further devices join the same username
+     */
+    public static class UserDevices {
+        public final String deviceToken;
+        public final CopyOnWriteArrayList<ClientConnection> devices;
+        
+        public UserDevices(ClientConnection firstDevice, String deviceToken) {
+            this.deviceToken = deviceToken;
+            this.devices = new CopyOnWriteArrayList<>();
+            this.devices.add(firstDevice);
+        }
+    }
+    
     /**
      * Entry for keyed bind waiting list
      */
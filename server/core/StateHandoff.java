@@ -0,0 +1,130 @@
+package core;
+
+import config.ServerConfig;
+import util.JsonUtils;
+import util.PrivateFiles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands bind and waiting-list state to the next server process
+ * Written to a local file on drain and restored once at startup
+ * The file holds device tokens: it is owner read/write only and removed
+ * as soon as it has been read (-Dsynq.handoff.file sets its location)
+ */
+public class StateHandoff {
+    
+    /**
+     * Saves bind state atomically (write then rename)
+     */
+    public static void save(ServerState state, Path file) {
+        Snapshot snapshot = new Snapshot();
+        snapshot.savedAt = System.currentTimeMillis();
+        snapshot.activePairs = new HashMap<>(state.activePairs);
+        snapshot.waitingKeyless = new HashMap<>(state.waitingKeyless);
+        snapshot.waitingKeyed = new ArrayList<>(state.waitingKeyed);
+        snapshot.passthroughUsers = new ArrayList<>(state.passthroughUsers);
+        snapshot.inboxUsers = new ArrayList<>(state.inboxUsers);
+        snapshot.offlineSince = new HashMap<>(state.offlineSince);
+        snapshot.deviceTokens = state.getDeviceTokens();
+        
+        try {
+            PrivateFiles.writeAtomically(file, JsonUtils.toJson(snapshot).getBytes(StandardCharsets.UTF_8));
+            
+            System.out.println("✓ Handed off " + snapshot.activePairs.size() / 2 + " binds");
+        } catch (Exception e) {
+            System.err.println("Failed to save handoff state: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Restores state left by previous process, if fresh
+     * Users must reconnect with their device token to reclaim their name
+     */
+    public static void restore(SynqServer server, Path file) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        
+        try {
+            Snapshot snapshot;
+            try {
+                snapshot = JsonUtils.fromJson(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), Snapshot.class);
+            } finally {
+                // Tokens never outlive the restart, readable or not
+                Files.deleteIfExists(file);
+            }
+            
+            if (System.currentTimeMillis() - snapshot.savedAt > ServerConfig.HANDOFF_MAX_AGE_MS) {
+                System.out.println("✗ Handoff state too old, ignored");
+                return;
+            }
+            
+            server.state.activePairs.putAll(snapshot.activePairs);
+            server.state.waitingKeyless.putAll(snapshot.waitingKeyless);
+            server.state.waitingKeyed.addAll(snapshot.waitingKeyed);
+            server.state.passthroughUsers.addAll(snapshot.passthroughUsers);
+            if (snapshot.inboxUsers != null) {
+                server.state.inboxUsers.addAll(snapshot.inboxUsers);
+                server.state.offlineSince.putAll(snapshot.offlineSince);
+            }
+            server.state.reservedTokens.putAll(snapshot.deviceTokens);
+            
+            scheduleReclaimExpiry(server);
+            System.out.println("✓ Restored " + snapshot.activePairs.size() / 2 + " binds from handoff");
+        } catch (Exception e) {
+            System.err.println("Failed to restore handoff state: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Drops restored state of users who did not come back in time
+     * Parked inbox users keep theirs until inbox retention expires
+     */
+    private static void scheduleReclaimExpiry(SynqServer server) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "handoff-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        timer.schedule(() -> {
+            List<String> missing = new ArrayList<>(server.state.reservedTokens.keySet());
+            for (String username : missing) {
+                if (server.state.isParked(username)) {
+                    continue;
+                }
+                server.state.reservedTokens.remove(username);
+                if (!server.state.users.containsKey(username)) {
+                    String partner = server.binds.unbindUser(username);
+                    if (partner != null) {
+                        server.router.notifyPartnerDisconnected(username, partner);
+                    }
+                }
+            }
+            timer.shutdown();
+        }, ServerConfig.HANDOFF_RECLAIM_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Serialized handoff state
+     */
+    private static class Snapshot {
+        long savedAt;
+        Map<String, String> activePairs;
+        Map<String, String> waitingKeyless;
+        List<ServerState.KeyEntry> waitingKeyed;
+        List<String> passthroughUsers;
+        List<String> inboxUsers;
+        Map<String, Long> offlineSince;
+        Map<String, String> deviceTokens;
+    }
+}
@@ -0,0 +1,320 @@
+package core;
+
+import client.ClientConnection;
+import client.ClientHandler;
+import client.ConnectionStats;
+import client.OutboundQueue;
+import config.ServerConfig;
+import config.ServerOptions;
+import protocol.Announcer;
+import protocol.BindManager;
+import protocol.DeliveryTracker;
+import protocol.MessageRouter;
+import protocol.OfflineInbox;
+import protocol.PresenceCoalescer;
+import protocol.RateLimiter;
+import transport.Channel;
+import transport.Transport;
+import util.BufferPool;
+import util.JsonUtils;
+import util.Validator;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One Synq server instance
+ * Owns its state and accepts clients from the given transport;
+ * several instances can run side by side in one JVM
+ */
+public class SynqServer {
+    public final ServerOptions options;
+    public final ServerState state;
+    public final BindManager binds;
+    public final MessageRouter router;
+    public final DeliveryTracker deliveries;
+    public final OfflineInbox inbox;
+    public final PresenceCoalescer presence;
+    public final Announcer announcer = new Announcer();
+    public final RateLimiter.Stats rateLimits = new RateLimiter.Stats();
+    
+    private final Transport transport;
+    private final Semaphore clientSlots;
+    private volatile boolean running = false;
+    private volatile boolean draining = false;
+    private final AtomicBoolean firstReady = new AtomicBoolean();
+    
+    public SynqServer(ServerOptions options, Transport transport) {
+        this.options = options;
+        this.transport = transport;
+        this.clientSlots = new Semaphore(options.maxClients);
+        this.state = new ServerState();
+        this.binds = new BindManager(state);
+        this.inbox = options.inboxDir != null ? new OfflineInbox(state, binds, Paths.get(options.inboxDir)) : null;
+        this.router = new MessageRouter(state, binds, inbox, options.asyncRelay);
+        this.deliveries = new DeliveryTracker(binds, router);
+        this.presence = new PresenceCoalescer(state, binds);
+    }
+    
+    /**
+     * Restores handoff state and starts accepting clients
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            throw new IllegalStateException("Server already started");
+        }
+        
+        HandshakePool.init();
+        if (options.handoffFile != null) {
+            StateHandoff.restore(this, Paths.get(options.handoffFile));
+        }
+        if (inbox != null) {
+            inbox.open();
+        }
+        presence.start();
+        transport.start(this::accept);
+        running = true;
+        
+        System.out.println("✓ Server started on " + transport.describe());
+    }
+    
+    /**
+     * Stops accepting, closes all connections and clears state
+     * Shared handshake pool is left running for other instances
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        
+        transport.stop();
+        state.shutdown();
+        presence.shutdown();
+        announcer.shutdown();
+        if (inbox != null) {
+            inbox.close();
+        }
+    }
+    
+    /**
+     * Admits channel if a client slot is free
+     */
+    private void accept(Channel channel) {
+        if (draining || !clientSlots.tryAcquire()) {
+            System.out.println("✗ Connection rejected (" + (draining ? "draining" : "server full") + "): " +
+                channel.getPeerAddress());
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing rejected channel: " + e.getMessage());
+            }
+            return;
+        }
+        
+        System.out.println("→ Accepting connection from: " + channel.getPeerAddress() +
+            " [" + (options.maxClients - clientSlots.availablePermits()) + "/" + options.maxClients + "]");
+        new ClientHandler(channel, this).start();
+    }
+    
+    /**
+     * Logs accept-to-ready latency of the first client after start
+     */
+    public void recordReady(long acceptedNanos) {
+        if (firstReady.compareAndSet(false, true)) {
+            System.out.printf("✓ First connection ready in %.1fms%n", (System.nanoTime() - acceptedNanos) / 1e6);
+        }
+    }
+    
+    /**
+     * Frees slot of a finished client
+     */
+    public void releaseSlot() {
+        clientSlots.release();
+    }
+    
+    /**
+     * Drains server before shutdown
+     * Stops accepting and relaying, tells clients when to reconnect (jittered),
+     * waits for queued frames and hands bind state to the next process
+     * DRAIN_TIMEOUT_MS bounds the whole drain, notifications included
+     */
+    public void drain() {
+        long deadline = System.currentTimeMillis() + ServerConfig.DRAIN_TIMEOUT_MS;
+        draining = true;
+        router.stopRelays();
+        System.out.println("Draining server...");
+        
+        // Stop accepting new connections
+        transport.stop();
+        
+        // Spread reconnects over time instead of a spike; only queued here,
+        // so a stuck client cannot hold up the shutdown hook
+        List<ClientConnection> connections = state.getAllConnections();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (ClientConnection client : connections) {
+            Map<String, String> msg = new HashMap<>();
+            msg.put("type", "server_draining");
+            msg.put("reconnect_after_ms", String.valueOf(
+                random.nextLong(ServerConfig.DRAIN_RECONNECT_MIN_MS, ServerConfig.DRAIN_RECONNECT_MAX_MS)));
+            try {
+                client.queueEncrypted(JsonUtils.toJson(msg), OutboundQueue.Lane.CONTROL);
+            } catch (Exception e) {
+                System.err.println("Failed to notify " + client + " of drain: " + e.getMessage());
+            }
+        }
+        
+        // Let in-flight relays and notices finish
+        while (System.currentTimeMillis() < deadline && hasQueuedFrames(connections)) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        
+        if (options.handoffFile != null) {
+            StateHandoff.save(state, Paths.get(options.handoffFile));
+        }
+        System.out.println("✓ Drained " + connections.size() + " connections");
+    }
+    
+    /**
+     * Checks if any connection still has outbound frames queued
+     */
+    private static boolean hasQueuedFrames(List<ClientConnection> connections) {
+        for (ClientConnection client : connections) {
+            for (OutboundQueue.Lane lane : OutboundQueue.Lane.values()) {
+                if (client.outbound.getDepth(lane) > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Checks if server is draining
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+    
+    /**
+     * Checks if server is started and not yet stopped
+     */
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Gets buffer memory usage and heaviest connections
+     */
+    public String getMemoryReport() {
+        StringBuilder report = new StringBuilder(String.format(
+            "Buffers in use: %d bytes | Pooled: %d bytes | Refused: %d",
+            BufferPool.getOutstandingBytes(),
+            BufferPool.getPooledBytes(),
+            BufferPool.getRefusedCount()
+        ));
+        for (ClientConnection client : state.getHeaviestConnections(5)) {
+            report.append("\n  ").append(client).append(": ").append(client.bufferedBytes.get()).append(" bytes");
+        }
+        return report.toString();
+    }
+    
+    /**
+     * Gets connections ranked by one counter, with all their counters
+     */
+    public String getConnectionReport(ConnectionStats.Counter counter, int limit) {
+        List<ClientConnection> top = state.getTopConnections(counter, limit);
+        StringBuilder report = new StringBuilder(String.format("Top %d of %d connections by %s:",
+            top.size(), state.getAllConnectionCount(), counter.name().toLowerCase()));
+        for (ClientConnection client : top) {
+            ConnectionStats stats = client.stats;
+            report.append(String.format(
+                "%n  %s (%s): in %d frames/%d bytes, out %d frames/%d bytes, decrypt failures %d, " +
+                "queued %d, idle %.1fs, %s",
+                client, client.channel.getPeerAddress(),
+                stats.framesIn.get(), stats.bytesIn.get(), stats.framesOut.get(), stats.bytesOut.get(),
+                stats.decryptFailures.get(), ConnectionStats.Counter.QUEUE_DEPTH.read(client),
+                stats.getIdleMs() / 1000.0, state.describeBind(client.username)));
+        }
+        return report.toString();
+    }
+    
+    /**
+     * Gets outbound lane depth and wait times across connections
+     */
+    public String getOutboundReport() {
+        StringBuilder report = new StringBuilder();
+        for (OutboundQueue.Lane lane : OutboundQueue.Lane.values()) {
+            int depth = 0;
+            double maxWaitMs = 0;
+            for (ClientConnection client : state.getAllConnections()) {
+                depth += client.outbound.getDepth(lane);
+                maxWaitMs = Math.max(maxWaitMs, client.outbound.getMaxWaitMs(lane));
+            }
+            if (report.length() > 0) {
+                report.append(" | ");
+            }
+            report.append(String.format("%s: %d queued, max wait %.1fms", lane, depth, maxWaitMs));
+        }
+        return report.toString();
+    }
+    
+    /**
+     * Gets inbound rate limit hits
+     */
+    public String getRateLimitReport() {
+        return rateLimits.getReport();
+    }
+    
+    /**
+     * Gets offline inbox backlog and commit batching
+     */
+    public String getInboxReport() {
+        return inbox != null ? inbox.getReport() : "Inbox: disabled";
+    }
+    
+    /**
+     * Starts paced announcement to every connected device
+     * @return error code, or null once started
+     */
+    public String announce(String text) {
+        if (!Validator.isValidMessage(text)) {
+            return "invalid_message";
+        }
+        return announcer.announce(text, state.getAllConnections()) != null ? null : "announcement_in_progress";
+    }
+    
+    /**
+     * Gets progress of the latest announcement
+     */
+    public String getAnnouncementReport() {
+        return announcer.getReport();
+    }
+    
+    /**
+     * Gets current server status
+     */
+    public String getStatus() {
+        return String.format(
+            "Users: %d | Binds: %d | Slots: %d/%d | Handshake queue: %d (avg wait %.1fms, max %.1fms, rejected %d)",
+            state.getUserCount(),
+            state.getActiveBindCount(),
+            (options.maxClients - clientSlots.availablePermits()),
+            options.maxClients,
+            HandshakePool.getQueueDepth(),
+            HandshakePool.getAverageWaitMs(),
+            HandshakePool.getMaxWaitMs(),
+            HandshakePool.getRejectedCount()
+        );
+    }
+}
@@ -0,0 +1,121 @@
+package core;
+
+import client.ProtocolClient;
+import config.ServerConfig;
+import config.ServerOptions;
+import crypto.AESEncryption;
+import crypto.DHKeyExchange;
+import crypto.KeyRatchet;
+import crypto.PassthroughAuth;
+import transport.InMemoryTransport;
+import util.ConsoleMute;
+import util.JsonUtils;
+import javax.crypto.KeyAgreement;
+import javax.crypto.SecretKey;
+import java.security.KeyPair;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms crypto providers, JSON and the relay path before the listener opens
+ * Drives logins and chat through a throwaway in-memory instance so the
+ * hot paths are loaded and JIT-compiled before the first real client
+ */
+public class WarmUp {
+    
+    /**
+     * Runs warm-up; logging of the throwaway instance is muted on its own
+     * threads only, so output of the rest of the process is unaffected
+     */
+    public static Result run() {
+        long start = System.nanoTime();
+        Result result = new Result();
+        ConsoleMute.install();
+        ConsoleMute.setMuted(true);
+        
+        InMemoryTransport transport = new InMemoryTransport();
+        SynqServer server = new SynqServer(ServerOptions.warmUp(ServerConfig.WARMUP_HANDSHAKES + 2), transport);
+        try {
+            loadProviders();
+            server.start();
+            warmHandshakes(transport, result);
+            warmRelay(transport);
+        } catch (Exception e) {
+            System.err.println("✗ Warm-up incomplete: " + e.getMessage());
+        } finally {
+            server.stop();
+            ConsoleMute.setMuted(false);
+        }
+        
+        result.elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+    
+    /**
+     * Resolves every JCA provider the server uses at least once
+     */
+    private static void loadProviders() throws Exception {
+        KeyPair keyPair = DHKeyExchange.generateKeyPair();
+        KeyAgreement agreement = DHKeyExchange.initKeyAgreement(keyPair.getPrivate());
+        agreement.doPhase(DHKeyExchange.parsePublicKey(keyPair.getPublic().getEncoded()), true);
+        SecretKey key = DHKeyExchange.deriveAESKey(agreement);
+        
+        AESEncryption.decrypt(key, AESEncryption.encrypt(key, "{}"));
+        PassthroughAuth.deriveMacKey(KeyRatchet.next(key, 1));
+    }
+    
+    /**
+     * Logs in sequentially; first login is the cold latency, last the warm one
+     */
+    private static void warmHandshakes(InMemoryTransport transport, Result result) throws Exception {
+        for (int i = 0; i < ServerConfig.WARMUP_HANDSHAKES; i++) {
+            long begin = System.nanoTime();
+            ProtocolClient client = new ProtocolClient(transport.connect(), "warmup_" + i);
+            double latencyMs = (System.nanoTime() - begin) / 1e6;
+            client.close();
+            
+            if (i == 0) {
+                result.coldConnectMs = latencyMs;
+            }
+            result.warmConnectMs = latencyMs;
+        }
+    }
+    
+    /**
+     * Relays chat between a bound pair until the relay path is compiled
+     */
+    private static void warmRelay(InMemoryTransport transport) throws Exception {
+        ProtocolClient sender = new ProtocolClient(transport.connect(), "warmup_sender");
+        ProtocolClient receiver = new ProtocolClient(transport.connect(), "warmup_receiver");
+        sender.bind(receiver.username);
+        receiver.bind(sender.username);
+        sender.awaitType("bind_success");
+        receiver.awaitType("bind_success");
+        
+        CountDownLatch delivered = new CountDownLatch(ServerConfig.WARMUP_MESSAGES);
+        receiver.startDraining(delivered);
+        sender.startDraining(null);
+        
+        for (int i = 0; i < ServerConfig.WARMUP_MESSAGES; i++) {
+            Map<String, String> msg = new HashMap<>();
+            msg.put("type", "message");
+            msg.put("text", "warm-up " + i);
+            sender.send(JsonUtils.toJson(msg));
+        }
+        delivered.await(ServerConfig.WARMUP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        
+        sender.close();
+        receiver.close();
+    }
+    
+    /**
+     * Outcome of warm-up
+     */
+    public static class Result {
+        public long elapsedMs;
+        public double coldConnectMs;
+        public double warmConnectMs;
+    }
+}
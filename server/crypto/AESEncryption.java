@@ -4,6 +4,7 @@ import config.ServerConfig;
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.Base64;
 
@@ -14,6 +15,15 @@ import java.util.Base64;
 public class AESEncryption {
     private static final SecureRandom secureRandom = new SecureRandom();
     
+    // Cipher lookup is costly; each thread reuses its own instance
+    private static final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (Exception e) {
+            throw new IllegalStateException("AES/GCM unavailable", e);
+        }
+    });
+    
     /**
      * Encrypts plaintext using AES-GCM
      * @param key AES secret key
@@ -21,22 +31,29 @@ public class AESEncryption {
      * @return Base64 encoded (IV + ciphertext)
      */
     public static String encrypt(SecretKey key, String plaintext) throws Exception {
-        // Generate random IV
-        byte[] iv = new byte[ServerConfig.GCM_IV_LENGTH];
-        secureRandom.nextBytes(iv);
+        return Base64.getEncoder().encodeToString(encryptRaw(key, plaintext));
+    }
+    
+    /**
+     * Encrypts plaintext using AES-GCM
+     * @return IV + ciphertext, unencoded
+     */
+    public static byte[] encryptRaw(SecretKey key, String plaintext) throws Exception {
+        byte[] input = plaintext.getBytes(StandardCharsets.UTF_8);
         
-        // Encrypt with AES-GCM
-        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-        GCMParameterSpec spec = new GCMParameterSpec(ServerConfig.GCM_TAG_LENGTH, iv);
-        cipher.init(Cipher.ENCRYPT_MODE, key, spec);
-        byte[] ciphertext = cipher.doFinal(plaintext.getBytes("UTF-8"));
+        // Encrypt with AES-GCM directly after the IV (no intermediate copies)
+        Cipher cipher = ciphers.get();
+        byte[] combined = new byte[ServerConfig.GCM_IV_LENGTH + input.length + ServerConfig.GCM_TAG_LENGTH / 8];
         
-        // Prepend IV to ciphertext
-        byte[] combined = new byte[iv.length + ciphertext.length];
+        // Generate random IV into output prefix
+        byte[] iv = new byte[ServerConfig.GCM_IV_LENGTH];
+        secureRandom.nextBytes(iv);
         System.arraycopy(iv, 0, combined, 0, iv.length);
-        System.arraycopy(ciphertext, 0, combined, iv.length, ciphertext.length);
         
-        return Base64.getEncoder().encodeToString(combined);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(ServerConfig.GCM_TAG_LENGTH, iv));
+        cipher.doFinal(input, 0, input.length, combined, iv.length);
+        
+        return combined;
     }
     
     /**
@@ -46,20 +63,23 @@ public class AESEncryption {
      * @return Decrypted plaintext
      */
     public static String decrypt(SecretKey key, String base64Combined) throws Exception {
-        byte[] combined = Base64.getDecoder().decode(base64Combined);
-        
-        // Extract IV and ciphertext
-        byte[] iv = new byte[ServerConfig.GCM_IV_LENGTH];
-        byte[] ciphertext = new byte[combined.length - ServerConfig.GCM_IV_LENGTH];
-        System.arraycopy(combined, 0, iv, 0, iv.length);
-        System.arraycopy(combined, iv.length, ciphertext, 0, ciphertext.length);
+        return decryptRaw(key, Base64.getDecoder().decode(base64Combined));
+    }
+    
+    /**
+     * Decrypts unencoded IV + ciphertext using AES-GCM
+     */
+    public static String decryptRaw(SecretKey key, byte[] combined) throws Exception {
+        if (combined.length < ServerConfig.GCM_IV_LENGTH + ServerConfig.GCM_TAG_LENGTH / 8) {
+            throw new IllegalArgumentException("Ciphertext too short");
+        }
         
-        // Decrypt with AES-GCM
-        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-        GCMParameterSpec spec = new GCMParameterSpec(ServerConfig.GCM_TAG_LENGTH, iv);
+        // IV and ciphertext are read in place from the combined buffer
+        Cipher cipher = ciphers.get();
+        GCMParameterSpec spec = new GCMParameterSpec(ServerConfig.GCM_TAG_LENGTH, combined, 0, ServerConfig.GCM_IV_LENGTH);
         cipher.init(Cipher.DECRYPT_MODE, key, spec);
-        byte[] plaintext = cipher.doFinal(ciphertext);
+        byte[] plaintext = cipher.doFinal(combined, ServerConfig.GCM_IV_LENGTH, combined.length - ServerConfig.GCM_IV_LENGTH);
         
-        return new String(plaintext, "UTF-8");
+        return new String(plaintext, StandardCharsets.UTF_8);
     }
 }
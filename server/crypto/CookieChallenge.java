@@ -0,0 +1,132 @@
+package crypto;
+
+import config.ServerConfig;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stateless HMAC cookie challenge with optional client puzzle
+ * Lets the server check a client cheaply before any DH work
+ */
+public class CookieChallenge {
+    private static final byte[] secret = new byte[32];
+    private static final SecureRandom random = new SecureRandom();
+    
+    // Connection nonce -> issue time of cookies already redeemed, kept for their lifetime
+    private static final ConcurrentHashMap<String, Long> redeemed = new ConcurrentHashMap<>();
+    private static final AtomicLong lastSweep = new AtomicLong();
+    
+    static {
+        random.nextBytes(secret);
+    }
+    
+    /**
+     * Issues cookie bound to peer address, time, puzzle difficulty and a
+     * fresh per-connection nonce
+     * Format: timestamp:difficulty:base64(nonce):base64(hmac)
+     */
+    public static String issue(String peerAddress, int difficulty) throws Exception {
+        byte[] connectionNonce = new byte[16];
+        random.nextBytes(connectionNonce);
+        long timestamp = System.currentTimeMillis();
+        String payload = timestamp + ":" + difficulty + ":" + Base64.getEncoder().encodeToString(connectionNonce);
+        return payload + ":" + mac(peerAddress, payload);
+    }
+    
+    /**
+     * Verifies echoed cookie and puzzle solution
+     * The cookie must be the one issued on this connection and is redeemed
+     * at most once; puzzle requires SHA-256(cookie:nonce) to start with
+     * difficulty zero bits
+     */
+    public static boolean verify(String peerAddress, String issued, String cookie, String nonce) {
+        try {
+            if (!CryptoUtils.constantTimeEquals(issued, cookie)) {
+                return false;
+            }
+            String[] parts = cookie.split(":");
+            if (parts.length != 4) {
+                return false;
+            }
+            
+            long timestamp = Long.parseLong(parts[0]);
+            int difficulty = Integer.parseInt(parts[1]);
+            long age = System.currentTimeMillis() - timestamp;
+            if (age < 0 || age > ServerConfig.COOKIE_LIFETIME_MS) {
+                return false;
+            }
+            
+            String expected = mac(peerAddress, parts[0] + ":" + parts[1] + ":" + parts[2]);
+            if (!CryptoUtils.constantTimeEquals(expected, parts[3])) {
+                return false;
+            }
+            if (difficulty > 0 && leadingZeroBits(cookie + ":" + nonce) < difficulty) {
+                return false;
+            }
+            
+            forgetExpired();
+            return redeemed.putIfAbsent(parts[2], timestamp) == null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Drops redeemed cookies past their lifetime, at most once a second;
+     * verify rejects those by age anyway
+     */
+    private static void forgetExpired() {
+        long now = System.currentTimeMillis();
+        long last = lastSweep.get();
+        if (now - last < 1000 || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        long cutoff = now - ServerConfig.COOKIE_LIFETIME_MS;
+        redeemed.values().removeIf(issuedAt -> issuedAt < cutoff);
+    }
+    
+    /**
+     * Computes puzzle difficulty from handshake queue depth
+     * Zero under normal load, rising as the queue fills
+     */
+    public static int difficultyFor(int queueDepth) {
+        if (queueDepth < ServerConfig.PUZZLE_QUEUE_THRESHOLD) {
+            return 0;
+        }
+        int bits = 8 + 2 * (queueDepth / ServerConfig.PUZZLE_QUEUE_THRESHOLD);
+        return Math.min(bits, ServerConfig.MAX_PUZZLE_BITS);
+    }
+    
+    /**
+     * Computes Base64 HMAC-SHA256 over peer address and payload
+     */
+    private static String mac(String peerAddress, String payload) throws Exception {
+        Mac hmac = Mac.getInstance("HmacSHA256");
+        hmac.init(new SecretKeySpec(secret, "HmacSHA256"));
+        byte[] tag = hmac.doFinal((peerAddress + "|" + payload).getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(tag);
+    }
+    
+    /**
+     * Counts leading zero bits of SHA-256 digest
+     */
+    private static int leadingZeroBits(String input) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+        int bits = 0;
+        for (byte b : digest) {
+            if (b == 0) {
+                bits += 8;
+                continue;
+            }
+            bits += Integer.numberOfLeadingZeros(b & 0xFF) - 24;
+            break;
+        }
+        return bits;
+    }
+}
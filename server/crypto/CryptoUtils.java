@@ -1,12 +1,15 @@
 package crypto;
 
 import javax.crypto.SecretKey;
+import java.security.SecureRandom;
+import java.util.Base64;
 
 /**
  * High-level cryptographic utilities
  * Convenience wrapper for AES and DH operations
  */
 public class CryptoUtils {
+    private static final SecureRandom secureRandom = new SecureRandom();
     
     /**
      * Encrypts plaintext using AES-GCM
@@ -15,6 +18,13 @@ public class CryptoUtils {
         return AESEncryption.encrypt(key, plaintext);
     }
     
+    /**
+     * Encrypts plaintext using AES-GCM, without Base64
+     */
+    public static byte[] encryptRaw(SecretKey key, String plaintext) throws Exception {
+        return AESEncryption.encryptRaw(key, plaintext);
+    }
+    
     /**
      * Decrypts ciphertext using AES-GCM
      */
@@ -22,6 +32,31 @@ public class CryptoUtils {
         return AESEncryption.decrypt(key, ciphertext);
     }
     
+    /**
+     * Decrypts unencoded ciphertext using AES-GCM
+     */
+    public static String decryptRaw(SecretKey key, byte[] ciphertext) throws Exception {
+        return AESEncryption.decryptRaw(key, ciphertext);
+    }
+    
+    /**
+     * Generates random bytes from the shared secure source
+     */
+    public static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        secureRandom.nextBytes(bytes);
+        return bytes;
+    }
+    
+    /**
+     * Generates random URL-safe token (128 bits)
+     */
+    public static String randomToken() {
+        byte[] bytes = new byte[16];
+        secureRandom.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+    
     /**
      * Constant-time string comparison
      * Prevents timing attacks on hash comparison
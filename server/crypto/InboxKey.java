@@ -0,0 +1,29 @@
+package crypto;
+
+import config.ServerConfig;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * At-rest key for a user's offline inbox
+ * Bound to the device token, so stored messages can only be read once the
+ * token holder logs back in, and keyed by a server secret, so the token
+ * alone does not open them
+ */
+public class InboxKey {
+    private static final byte[] LABEL = "synq-inbox".getBytes(StandardCharsets.UTF_8);
+    
+    /**
+     * key = HMAC-SHA256(secret, "synq-inbox" || token), truncated to AES key size
+     */
+    public static SecretKey derive(byte[] secret, String deviceToken) throws Exception {
+        Mac hmac = Mac.getInstance("HmacSHA256");
+        hmac.init(new SecretKeySpec(secret, "HmacSHA256"));
+        hmac.update(LABEL);
+        byte[] keyBytes = hmac.doFinal(deviceToken.getBytes(StandardCharsets.UTF_8));
+        
+        return new SecretKeySpec(keyBytes, 0, ServerConfig.AES_KEY_SIZE / 8, "AES");
+    }
+}
@@ -0,0 +1,31 @@
+package crypto;
+
+import config.ServerConfig;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * One-way AES key ratchet for in-session rekeying
+ * Both sides derive the next key from the current one without a new exchange
+ */
+public class KeyRatchet {
+    private static final byte[] LABEL = "synq-rekey".getBytes(StandardCharsets.UTF_8);
+    
+    /**
+     * Derives key for the given epoch from the current key
+     * next = SHA-256(current || "synq-rekey" || epoch), truncated to AES key size
+     */
+    public static SecretKey next(SecretKey current, int epoch) throws Exception {
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        sha256.update(current.getEncoded());
+        sha256.update(LABEL);
+        sha256.update(new byte[] {
+            (byte) (epoch >>> 24), (byte) (epoch >>> 16), (byte) (epoch >>> 8), (byte) epoch
+        });
+        byte[] keyBytes = sha256.digest();
+        
+        return new SecretKeySpec(keyBytes, 0, ServerConfig.AES_KEY_SIZE / 8, "AES");
+    }
+}
@@ -0,0 +1,41 @@
+package events;
+
+import config.ServerConfig;
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for slow consumers and load shedding
+ */
+@Name("synq.Backpressure")
+@Label("Backpressure Incident")
+@Category("Synq")
+public class BackpressureEvent extends jdk.jfr.Event {
+    @Label("Kind")
+    public String kind;
+    
+    @Label("Connection")
+    public String connection;
+    
+    @Label("Stall")
+    @Timespan
+    public long stallNanos;
+    
+    /**
+     * Records an instant backpressure incident
+     */
+    public static void record(String kind, String connection, long stallNanos) {
+        if (!ServerConfig.JFR_EVENTS_ENABLED) {
+            return;
+        }
+        BackpressureEvent event = new BackpressureEvent();
+        if (event.isEnabled()) {
+            event.kind = kind;
+            event.connection = connection;
+            event.stallNanos = stallNanos;
+            event.commit();
+        }
+    }
+}
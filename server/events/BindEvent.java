@@ -0,0 +1,39 @@
+package events;
+
+import config.ServerConfig;
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a bind state transition
+ */
+@Name("synq.Bind")
+@Label("Bind Transition")
+@Category("Synq")
+public class BindEvent extends jdk.jfr.Event {
+    @Label("Transition")
+    public String transition;
+    
+    @Label("User")
+    public String user;
+    
+    @Label("Partner")
+    public String partner;
+    
+    /**
+     * Records an instant bind transition
+     */
+    public static void record(String transition, String user, String partner) {
+        if (!ServerConfig.JFR_EVENTS_ENABLED) {
+            return;
+        }
+        BindEvent event = new BindEvent();
+        if (event.isEnabled()) {
+            event.transition = transition;
+            event.user = user;
+            event.partner = partner;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a login or key exchange phase
+ */
+@Name("synq.Handshake")
+@Label("Handshake Phase")
+@Category("Synq")
+public class HandshakeEvent extends jdk.jfr.Event {
+    @Label("Phase")
+    public String phase;
+    
+    @Label("Username")
+    public String username;
+    
+    @Label("Success")
+    public boolean success;
+}
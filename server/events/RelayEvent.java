@@ -0,0 +1,78 @@
+package events;
+
+import config.ServerConfig;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one inbound frame and the relay it causes
+ * Phase timings are accumulated on the handling thread
+ */
+@Name("synq.Relay")
+@Label("Relay")
+@Category("Synq")
+public class RelayEvent extends jdk.jfr.Event {
+    private static final ThreadLocal<RelayEvent> current = new ThreadLocal<>();
+    
+    @Label("Sender")
+    public String sender;
+    
+    @Label("Message Type")
+    public String messageType;
+    
+    @Label("Payload Size")
+    @DataAmount
+    public int payloadSize;
+    
+    @Label("Decrypt Time")
+    @Timespan
+    public long decryptNanos;
+    
+    @Label("Parse Time")
+    @Timespan
+    public long parseNanos;
+    
+    @Label("Encrypt Time")
+    @Timespan
+    public long encryptNanos;
+    
+    @Label("Write Time")
+    @Timespan
+    public long writeNanos;
+    
+    /**
+     * Begins event for this thread, or returns null when disabled
+     */
+    public static RelayEvent start(String sender, int payloadSize) {
+        if (!ServerConfig.JFR_EVENTS_ENABLED) {
+            return null;
+        }
+        RelayEvent event = new RelayEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.sender = sender;
+        event.payloadSize = payloadSize;
+        event.begin();
+        current.set(event);
+        return event;
+    }
+    
+    /**
+     * Gets event in progress on this thread, if any
+     */
+    public static RelayEvent current() {
+        return ServerConfig.JFR_EVENTS_ENABLED ? current.get() : null;
+    }
+    
+    /**
+     * Commits event and detaches it from this thread
+     */
+    public void finish() {
+        current.remove();
+        commit();
+    }
+}
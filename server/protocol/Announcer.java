@@ -0,0 +1,244 @@
+package protocol;
+
+import client.ClientConnection;
+import client.OutboundQueue;
+import config.ServerConfig;
+import util.JsonUtils;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-wide announcements from operators
+ * Message is serialized once, then encrypted per recipient in parallel
+ * batches on low-priority threads, paced to a target rate so live relays
+ * keep their latency; frames are only queued, outbound writer threads
+ * write them, so a stuck recipient cannot hold up the announcement
+ */
+public class Announcer {
+    private final ExecutorService encryptPool;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile Announcement current;
+    
+    public Announcer() {
+        AtomicInteger threadId = new AtomicInteger();
+        encryptPool = Executors.newFixedThreadPool(ServerConfig.ANNOUNCE_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "announce-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(ServerConfig.ANNOUNCE_THREAD_PRIORITY);
+            return thread;
+        });
+    }
+    
+    /**
+     * Starts announcement to the given connections at the configured rate
+     * @return started announcement, or null if another is still running
+     */
+    public Announcement announce(String text, List<ClientConnection> recipients) {
+        return announce(text, recipients, ServerConfig.ANNOUNCE_RATE_PER_SEC);
+    }
+    
+    /**
+     * Starts announcement at given rate (recipients per second, 0 = unpaced)
+     */
+    public synchronized Announcement announce(String text, List<ClientConnection> recipients, int ratePerSec) {
+        if (current != null && !current.isFinished()) {
+            return null;
+        }
+        
+        int id = nextId.incrementAndGet();
+        Map<String, String> msg = new HashMap<>();
+        msg.put("type", "announcement");
+        msg.put("id", String.valueOf(id));
+        msg.put("text", text);
+        Announcement announcement = new Announcement(id, JsonUtils.toJson(msg), recipients, ratePerSec);
+        current = announcement;
+        
+        Thread coordinator = new Thread(announcement::run, "announce-pacer-" + announcement.id);
+        coordinator.setDaemon(true);
+        coordinator.start();
+        
+        System.out.println("✓ Announcement #" + announcement.id + " started: " + recipients.size() + " recipients");
+        return announcement;
+    }
+    
+    /**
+     * Gets most recent announcement, or null if none was made
+     */
+    public Announcement getCurrent() {
+        return current;
+    }
+    
+    /**
+     * Gets progress of most recent announcement
+     */
+    public String getReport() {
+        Announcement announcement = current;
+        return announcement != null ? announcement.getProgress() : "Announcements: none";
+    }
+    
+    /**
+     * Stops encryption threads; running announcement is abandoned
+     */
+    public void shutdown() {
+        Announcement announcement = current;
+        if (announcement != null) {
+            announcement.cancel();
+        }
+        encryptPool.shutdownNow();
+    }
+    
+    /**
+     * One announcement in progress
+     */
+    public class Announcement {
+        public final int id;
+        private final String json;
+        private final List<ClientConnection> recipients;
+        private final int ratePerSec;
+        private final AtomicInteger sent = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private volatile long startNanos;
+        private volatile long finishNanos;
+        private volatile boolean cancelled = false;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        
+        Announcement(int id, String json, List<ClientConnection> recipients, int ratePerSec) {
+            this.id = id;
+            this.json = json;
+            this.recipients = recipients;
+            this.ratePerSec = ratePerSec;
+        }
+        
+        /**
+         * Sends batch by batch; each batch is split across the encrypt pool
+         * and the next one waits for its slot in the paced schedule
+         * Recipients not reached within the batch timeout count as failed
+         */
+        private void run() {
+            startNanos = System.nanoTime();
+            int batchSize = ServerConfig.ANNOUNCE_BATCH_SIZE;
+            int slices = ServerConfig.ANNOUNCE_THREADS;
+            
+            try {
+                for (int from = 0; from < recipients.size() && !cancelled; from += batchSize) {
+                    if (ratePerSec > 0) {
+                        long dueNanos = startNanos + (long) from * 1_000_000_000L / ratePerSec;
+                        long waitNanos = dueNanos - System.nanoTime();
+                        if (waitNanos > 0) {
+                            TimeUnit.NANOSECONDS.sleep(waitNanos);
+                        }
+                    }
+                    
+                    int to = Math.min(from + batchSize, recipients.size());
+                    int sliceSize = (to - from + slices - 1) / slices;
+                    CountDownLatch batchDone = new CountDownLatch((to - from + sliceSize - 1) / sliceSize);
+                    AtomicInteger unsettled = new AtomicInteger(to - from);
+                    for (int start = from; start < to; start += sliceSize) {
+                        List<ClientConnection> slice = recipients.subList(start, Math.min(start + sliceSize, to));
+                        encryptPool.execute(() -> {
+                            try {
+                                for (ClientConnection recipient : slice) {
+                                    if (unsettled.get() == 0) {
+                                        break; // Batch timed out
+                                    }
+                                    settle(unsettled, sendTo(recipient));
+                                }
+                            } finally {
+                                batchDone.countDown();
+                            }
+                        });
+                    }
+                    if (!batchDone.await(ServerConfig.ANNOUNCE_BATCH_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                        failed.addAndGet(unsettled.getAndSet(0));
+                    }
+                }
+            } catch (InterruptedException e) {
+                cancelled = true;
+            } catch (Exception e) {
+                System.err.println("Announcement #" + id + " failed: " + e.getMessage());
+                cancelled = true;
+            } finally {
+                finishNanos = System.nanoTime();
+                finished.countDown();
+            }
+            
+            System.out.printf("%s Announcement #%d %s: %d/%d delivered, %d failed in %.0fms%n",
+                cancelled ? "✗" : "✓", id, cancelled ? "stopped" : "done",
+                sent.get(), recipients.size(), failed.get(), getElapsedMs());
+        }
+        
+        private boolean sendTo(ClientConnection recipient) {
+            if (!recipient.isSecure()) {
+                return false;
+            }
+            try {
+                recipient.queueEncrypted(json, OutboundQueue.Lane.BULK);
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+        
+        /**
+         * Counts recipient's outcome unless its batch already timed out
+         * and counted it as failed
+         */
+        private void settle(AtomicInteger unsettled, boolean delivered) {
+            if (unsettled.getAndUpdate(left -> left > 0 ? left - 1 : 0) > 0) {
+                (delivered ? sent : failed).incrementAndGet();
+            }
+        }
+        
+        /**
+         * Stops after the batch in flight
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+        
+        public boolean isFinished() {
+            return finished.getCount() == 0;
+        }
+        
+        /**
+         * Waits for announcement to finish
+         * @return false on timeout
+         */
+        public boolean await(long timeoutMs) throws InterruptedException {
+            return finished.await(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        
+        public int getSent() {
+            return sent.get();
+        }
+        
+        public int getFailed() {
+            return failed.get();
+        }
+        
+        public double getElapsedMs() {
+            long end = isFinished() ? finishNanos : System.nanoTime();
+            return startNanos == 0 ? 0 : (end - startNanos) / 1e6;
+        }
+        
+        /**
+         * Gets progress line with rate and estimated remaining time
+         */
+        public String getProgress() {
+            int done = sent.get() + failed.get();
+            double elapsedMs = getElapsedMs();
+            double rate = elapsedMs > 0 ? done / (elapsedMs / 1000) : 0;
+            String state = isFinished()
+                ? (cancelled ? "stopped" : "done") + String.format(" in %.0fms", elapsedMs)
+                : String.format("eta %.1fs", rate > 0 ? (recipients.size() - done) / rate : 0);
+            return String.format("Announcement #%d: %d/%d sent, %d failed, %.0f/s, %s",
+                id, sent.get(), recipients.size(), failed.get(), rate, state);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package protocol;
 import client.ClientConnection;
 import core.ServerState;
 import crypto.CryptoUtils;
+import events.BindEvent;
 import util.Validator;
 import java.util.HashMap;
 import java.util.Map;
@@ -12,14 +13,19 @@ import java.util.Map;
  * Handles both keyless and security-key binding
  */
 public class BindManager {
+    private final ServerState state;
+    
+    public BindManager(ServerState state) {
+        this.state = state;
+    }
     
     /**
      * Handles keyless binding request
      * Both users must request each other
      */
-    public static BindResult handleKeylessBind(String requester, String target) {
+    public BindResult handleKeylessBind(String requester, String target) {
         // Validate target exists
-        if (!ServerState.users.containsKey(target)) {
+        if (!state.users.containsKey(target)) {
             return BindResult.error("target_offline");
         }
         
@@ -29,21 +35,22 @@ public class BindManager {
         }
         
         // Check if already bound
-        if (ServerState.activePairs.containsKey(requester)) {
+        if (state.activePairs.containsKey(requester)) {
             return BindResult.error("already_bound");
         }
         
         // Store this bind request
-        ServerState.waitingKeyless.put(requester, target);
+        state.waitingKeyless.put(requester, target);
         
         // Check if target also wants to bind with requester
-        String targetWants = ServerState.waitingKeyless.get(target);
+        String targetWants = state.waitingKeyless.get(target);
         if (requester.equals(targetWants)) {
             // Mutual bind found!
             completeBind(requester, target);
             return BindResult.success(target);
         }
         
+        BindEvent.record("waiting_keyless", requester, target);
         return BindResult.waiting();
     }
     
@@ -51,14 +58,14 @@ public class BindManager {
      * Handles security-key binding request
      * Both users must provide matching hash
      */
-    public static BindResult handleKeyedBind(String requester, String target, String hash) {
+    public BindResult handleKeyedBind(String requester, String target, String hash) {
         // Validate hash format
         if (!Validator.isValidHash(hash)) {
             return BindResult.error("invalid_hash");
         }
         
         // Validate target exists
-        if (!ServerState.users.containsKey(target)) {
+        if (!state.users.containsKey(target)) {
             return BindResult.error("target_offline");
         }
         
@@ -68,7 +75,7 @@ public class BindManager {
         }
         
         // Check if already bound
-        if (ServerState.activePairs.containsKey(requester)) {
+        if (state.activePairs.containsKey(requester)) {
             return BindResult.error("already_bound");
         }
         
@@ -77,34 +84,36 @@ public class BindManager {
         String userB = requester.compareTo(target) < 0 ? target : requester;
         
         // Check for matching entry
-        for (ServerState.KeyEntry entry : ServerState.waitingKeyed) {
+        for (ServerState.KeyEntry entry : state.waitingKeyed) {
             if (entry.userA.equals(userA) && 
                 entry.userB.equals(userB) && 
                 CryptoUtils.constantTimeEquals(entry.hash, hash)) {
                 // Match found!
-                ServerState.waitingKeyed.remove(entry);
+                state.waitingKeyed.remove(entry);
                 completeBind(userA, userB);
                 return BindResult.success(requester.equals(userA) ? userB : userA);
             }
         }
         
         // No match, add our entry
-        ServerState.waitingKeyed.add(new ServerState.KeyEntry(userA, userB, hash));
+        state.waitingKeyed.add(new ServerState.KeyEntry(userA, userB, hash));
+        BindEvent.record("waiting_keyed", requester, target);
         return BindResult.waiting();
     }
     
     /**
      * Completes binding between two users
      */
-    private static void completeBind(String userA, String userB) {
+    private void completeBind(String userA, String userB) {
         // Register active pair (bidirectional)
-        ServerState.activePairs.put(userA, userB);
-        ServerState.activePairs.put(userB, userA);
+        state.activePairs.put(userA, userB);
+        state.activePairs.put(userB, userA);
         
         // Clear waiting entries
-        ServerState.waitingKeyless.remove(userA);
-        ServerState.waitingKeyless.remove(userB);
+        state.waitingKeyless.remove(userA);
+        state.waitingKeyless.remove(userB);
         
+        BindEvent.record("bound", userA, userB);
         System.out.println("✓ Bind: " + userA + " <-> " + userB);
     }
     
@@ -112,34 +121,97 @@ public class BindManager {
      * Unbinds user (on disconnect)
      * Returns partner username if was bound
      */
-    public static String unbindUser(String username) {
+    public String unbindUser(String username) {
         // Remove from waiting lists
-        ServerState.waitingKeyless.remove(username);
-        ServerState.waitingKeyed.removeIf(e -> 
+        state.waitingKeyless.remove(username);
+        state.waitingKeyed.removeIf(e -> 
             e.userA.equals(username) || e.userB.equals(username));
         
         // Remove from active pairs
-        String partner = ServerState.activePairs.remove(username);
+        state.passthroughUsers.remove(username);
+        releaseInbox(username);
+        String partner = state.activePairs.remove(username);
         if (partner != null) {
-            ServerState.activePairs.remove(partner);
+            state.activePairs.remove(partner);
+            state.passthroughUsers.remove(partner);
+            releaseInbox(partner);
+            BindEvent.record("unbound", username, partner);
             System.out.println("✗ Unbind: " + username + " <-> " + partner);
         }
         
         return partner;
     }
     
+    /**
+     * Drops inbox opt-in and frees name of user parked offline
+     */
+    private void releaseInbox(String username) {
+        state.inboxUsers.remove(username);
+        if (state.offlineSince.remove(username) != null) {
+            state.reservedTokens.remove(username);
+        }
+    }
+    
+    /**
+     * Handles offline inbox opt-in
+     * Pair is kept across disconnects once both partners have requested it
+     */
+    public BindResult handleInboxRequest(String requester) {
+        String partner = state.activePairs.get(requester);
+        if (partner == null) {
+            return BindResult.error("not_bound");
+        }
+        
+        state.inboxUsers.add(requester);
+        if (state.inboxUsers.contains(partner)) {
+            BindEvent.record("inbox", requester, partner);
+            System.out.println("✓ Inbox: " + requester + " <-> " + partner);
+            return BindResult.success(partner);
+        }
+        return BindResult.waiting();
+    }
+    
+    /**
+     * Handles end-to-end passthrough opt-in
+     * Mode is active once both partners have requested it
+     */
+    public BindResult handlePassthroughRequest(String requester) {
+        String partner = state.activePairs.get(requester);
+        if (partner == null) {
+            return BindResult.error("not_bound");
+        }
+        
+        state.passthroughUsers.add(requester);
+        if (state.passthroughUsers.contains(partner)) {
+            BindEvent.record("passthrough", requester, partner);
+            System.out.println("✓ Passthrough: " + requester + " <-> " + partner);
+            return BindResult.success(partner);
+        }
+        return BindResult.waiting();
+    }
+    
+    /**
+     * Checks if user's pair relays in passthrough mode
+     */
+    public boolean isPassthrough(String username) {
+        String partner = state.activePairs.get(username);
+        return partner != null &&
+               state.passthroughUsers.contains(username) &&
+               state.passthroughUsers.contains(partner);
+    }
+    
     /**
      * Gets partner username if bound
      */
-    public static String getPartner(String username) {
-        return ServerState.activePairs.get(username);
+    public String getPartner(String username) {
+        return state.activePairs.get(username);
     }
     
     /**
      * Checks if user is currently bound
      */
-    public static boolean isBound(String username) {
-        return ServerState.activePairs.containsKey(username);
+    public boolean isBound(String username) {
+        return state.activePairs.containsKey(username);
     }
     
     /**
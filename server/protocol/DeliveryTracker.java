@@ -0,0 +1,265 @@
+package protocol;
+
+import client.ClientConnection;
+import config.ServerConfig;
+import util.JsonUtils;
+import util.Validator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Acknowledged delivery for chat messages that carry a client message ID
+ * Each sender -> partner stream numbers its messages, keeps a bounded window
+ * of unacknowledged ones for redelivery and suppresses repeated IDs, so
+ * senders can pipeline and only resend what is missing after a drop
+ */
+public class DeliveryTracker {
+    private final BindManager binds;
+    private final MessageRouter router;
+    
+    // Sender -> stream towards their current partner
+    private final ConcurrentHashMap<String, Stream> streams = new ConcurrentHashMap<>();
+    
+    public DeliveryTracker(BindManager binds, MessageRouter router) {
+        this.binds = binds;
+        this.router = router;
+    }
+    
+    /**
+     * Numbers and relays message, or reports the outcome of an earlier copy
+     */
+    public Receipt send(String sender, String messageText, String messageId) {
+        if (!Validator.isValidMessage(messageText)) {
+            return Receipt.error("invalid_message");
+        }
+        
+        String partner = binds.getPartner(sender);
+        if (partner == null) {
+            return Receipt.error("not_bound");
+        }
+        Stream stream = streams.compute(sender,
+            (name, current) -> current != null && current.partner.equals(partner) ? current : new Stream(partner));
+        
+        // Order lock is held across relay so sequence order is wire order; the
+        // stream lock only guards bookkeeping, so acks never wait on a relay
+        synchronized (stream.relayOrder) {
+            long seq;
+            String json;
+            synchronized (stream) {
+                Long known = stream.recentIds.get(messageId);
+                if (known != null) {
+                    return Receipt.duplicate(known, known <= stream.ackedSeq);
+                }
+                if (stream.unacked.size() >= ServerConfig.DELIVERY_WINDOW) {
+                    return Receipt.error("window_full");
+                }
+                
+                seq = stream.nextSeq++;
+                Map<String, String> relayMsg = new HashMap<>();
+                relayMsg.put("type", "message");
+                relayMsg.put("from", sender);
+                relayMsg.put("text", messageText);
+                relayMsg.put("id", messageId);
+                relayMsg.put("seq", String.valueOf(seq));
+                json = JsonUtils.toJson(relayMsg);
+                stream.recentIds.put(messageId, seq);
+                stream.unacked.put(seq, json);
+            }
+            
+            MessageRouter.RouteResult result = router.relay(partner, json, () -> notifyStored(sender, seq));
+            
+            synchronized (stream) {
+                if (!result.success) {
+                    // No later seq was issued meanwhile, so the number is reused
+                    stream.nextSeq = seq;
+                    stream.recentIds.remove(messageId);
+                    stream.unacked.remove(seq);
+                    return Receipt.error(result.error);
+                }
+                if (result.stored) {
+                    stream.unacked.remove(seq); // Inbox already keeps stored ones
+                }
+                stream.relayedSeq = seq;
+            }
+            return Receipt.accepted(seq);
+        }
+    }
+    
+    /**
+     * Tells sender a message kept for their parked partner is on disk
+     * Runs on the inbox commit thread, so it only queues
+     */
+    private void notifyStored(String sender, long seq) {
+        Map<String, String> msg = new HashMap<>();
+        msg.put("type", "stored");
+        msg.put("seq", String.valueOf(seq));
+        router.queueToUser(sender, msg);
+    }
+    
+    /**
+     * Applies cumulative ack from receiver and tells the sender
+     * @return false if seq does not match anything outstanding
+     */
+    public boolean ack(String receiver, long seq) {
+        String sender = binds.getPartner(receiver);
+        Stream stream = sender != null ? streams.get(sender) : null;
+        if (stream == null || !stream.partner.equals(receiver)) {
+            return false;
+        }
+        
+        synchronized (stream) {
+            if (seq <= stream.ackedSeq || seq >= stream.nextSeq) {
+                return false;
+            }
+            stream.unacked.headMap(seq, true).clear();
+            stream.ackedSeq = seq;
+        }
+        
+        Map<String, String> msg = new HashMap<>();
+        msg.put("type", "delivered");
+        msg.put("seq", String.valueOf(seq));
+        router.sendToUser(sender, msg);
+        return true;
+    }
+    
+    /**
+     * Resends unacknowledged messages to a device that just logged in
+     * Runs while the device still holds live relays, so the resent (older)
+     * seqs arrive before any newer one; messages already held for it are skipped
+     * @return number of messages resent
+     */
+    public int redeliver(ClientConnection device) {
+        String sender = binds.getPartner(device.username);
+        Stream stream = sender != null ? streams.get(sender) : null;
+        if (stream == null || !stream.partner.equals(device.username)) {
+            return 0;
+        }
+        
+        List<String> pending;
+        synchronized (stream) {
+            // One still in flight reaches the device through its own relay
+            pending = new ArrayList<>(stream.unacked.headMap(stream.relayedSeq, true).values());
+        }
+        int resent = 0;
+        for (String json : pending) {
+            if (device.isHeld(json)) {
+                continue;
+            }
+            try {
+                device.sendReplayed(json);
+                resent++;
+            } catch (Exception e) {
+                System.err.println("Failed to redeliver to " + device + ": " + e.getMessage());
+                break;
+            }
+        }
+        if (resent > 0) {
+            System.out.println("✓ Redelivered " + resent + " unacked to " + device);
+        }
+        return resent;
+    }
+    
+    /**
+     * Gets sender's view of their stream, for resending only what is missing
+     * IDs listed were accepted; those up to "acked" were also delivered
+     */
+    public Map<String, Object> sync(String sender) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("type", "delivery_sync");
+        
+        String partner = binds.getPartner(sender);
+        Stream stream = streams.get(sender);
+        if (stream == null || !stream.partner.equals(partner)) {
+            response.put("acked", "0");
+            response.put("next", "1");
+            response.put("ids", List.of());
+            return response;
+        }
+        
+        synchronized (stream) {
+            response.put("acked", String.valueOf(stream.ackedSeq));
+            response.put("next", String.valueOf(stream.nextSeq));
+            response.put("ids", new ArrayList<>(stream.recentIds.keySet()));
+        }
+        return response;
+    }
+    
+    /**
+     * Drops stream of user whose bind ended
+     */
+    public void forget(String username) {
+        streams.remove(username);
+    }
+    
+    /**
+     * Delivery state of one sender -> partner direction
+     */
+    private static class Stream {
+        final String partner;
+        final Object relayOrder = new Object();
+        long nextSeq = 1;
+        long ackedSeq = 0;
+        long relayedSeq = 0;
+        final TreeMap<Long, String> unacked = new TreeMap<>();
+        
+        // Recently accepted IDs -> seq, oldest evicted first
+        final LinkedHashMap<String, Long> recentIds = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > ServerConfig.DELIVERY_RECENT_IDS;
+            }
+        };
+        
+        Stream(String partner) {
+            this.partner = partner;
+        }
+    }
+    
+    /**
+     * Outcome of a tracked send
+     */
+    public static class Receipt {
+        public final String status; // accepted, delivered or error
+        public final long seq;
+        public final String error;
+        
+        private Receipt(String status, long seq, String error) {
+            this.status = status;
+            this.seq = seq;
+            this.error = error;
+        }
+        
+        public static Receipt accepted(long seq) {
+            return new Receipt("accepted", seq, null);
+        }
+        
+        public static Receipt duplicate(long seq, boolean delivered) {
+            return new Receipt(delivered ? "delivered" : "accepted", seq, null);
+        }
+        
+        public static Receipt error(String error) {
+            return new Receipt("error", 0, error);
+        }
+        
+        /**
+         * Builds reply for the sender
+         */
+        public Map<String, String> toMessage(String messageId) {
+            Map<String, String> msg = new HashMap<>();
+            msg.put("id", messageId);
+            if (error != null) {
+                msg.put("type", "error");
+                msg.put("error", error);
+            } else {
+                msg.put("type", status);
+                msg.put("seq", String.valueOf(seq));
+            }
+            return msg;
+        }
+    }
+}
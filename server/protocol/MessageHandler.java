@@ -2,12 +2,22 @@ package protocol;
 
 import client.ClientConnection;
 import client.ClientSession;
-import crypto.CryptoUtils;
+import client.LineWriter;
+import core.ServerState;
+import core.SynqServer;
 import util.JsonUtils;
+import util.TrafficCapture;
 import util.Validator;
+import config.ServerConfig;
+import crypto.PassthroughAuth;
+import events.RelayEvent;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -17,21 +27,73 @@ import java.util.Map;
 public class MessageHandler {
     private final ClientConnection client;
     private final ClientSession session;
+    private final ServerState state;
+    private final BindManager binds;
+    private final MessageRouter router;
+    private final DeliveryTracker deliveries;
+    private final PresenceCoalescer presence;
+    private final RateLimiter limiter;
+    private final boolean inboxAvailable;
+    private boolean disconnectRequested = false;
     
-    public MessageHandler(ClientConnection client, ClientSession session) {
+    public MessageHandler(ClientConnection client, ClientSession session, SynqServer server) {
         this.client = client;
         this.session = session;
+        this.state = server.state;
+        this.binds = server.binds;
+        this.router = server.router;
+        this.deliveries = server.deliveries;
+        this.presence = server.presence;
+        this.limiter = server.options.rateLimitEnabled ? new RateLimiter(server.rateLimits, client) : null;
+        this.inboxAvailable = server.inbox != null;
+    }
+    
+    /**
+     * Checks if client exceeded rate limits often enough to be dropped
+     */
+    public boolean isDisconnectRequested() {
+        return disconnectRequested;
     }
     
     /**
      * Processes encrypted message from client
      */
     public void handleEncryptedMessage(String encryptedLine) {
+        handleFrame(encryptedLine, null, encryptedLine.length());
+    }
+    
+    /**
+     * Processes encrypted message that arrived as raw bytes (binary WebSocket message)
+     */
+    public void handleEncryptedMessage(byte[] ciphertext) {
+        handleFrame(null, ciphertext, LineWriter.encodedLength(ciphertext.length));
+    }
+    
+    private void handleFrame(String encryptedLine, byte[] ciphertext, int length) {
+        // Charged before any decrypt or parse work
+        if (limiter != null && !limiter.allowFrame(length)) {
+            rejectRateLimited();
+            return;
+        }
+        
+        if (encryptedLine != null && !encryptedLine.isEmpty() && encryptedLine.charAt(0) == PassthroughAuth.FRAME_PREFIX) {
+            handlePassthroughFrame(encryptedLine);
+            return;
+        }
+        
+        RelayEvent event = RelayEvent.start(client.username, length);
         try {
             // Decrypt message
-            String decryptedJson = CryptoUtils.decrypt(client.aesKey, encryptedLine);
+            long start = System.nanoTime();
+            String decryptedJson = ciphertext != null ? client.decrypt(ciphertext) : client.decrypt(encryptedLine);
+            long decrypted = System.nanoTime();
             JsonObject message = JsonUtils.parse(decryptedJson);
             
+            if (event != null) {
+                event.decryptNanos = decrypted - start;
+                event.parseNanos = System.nanoTime() - decrypted;
+            }
+            
             // Validate message has type
             if (!JsonUtils.hasField(message, "type")) {
                 sendError("missing_type");
@@ -39,6 +101,9 @@ public class MessageHandler {
             }
             
             String type = message.get("type").getAsString();
+            if (event != null) {
+                event.messageType = type;
+            }
             
             // Route to appropriate handler
             switch (type) {
@@ -48,16 +113,48 @@ public class MessageHandler {
                 case "message":
                     handleChatMessage(message);
                     break;
+                case "batch":
+                    handleBatch(message);
+                    break;
+                case "ack":
+                    if (limiter != null && !limiter.allowAck()) {
+                        rejectRateLimited();
+                        break;
+                    }
+                    handleAck(message);
+                    break;
+                case "delivery_sync":
+                    handleDeliverySync();
+                    break;
+                case "rekey_request":
+                    client.rekey();
+                    break;
+                case "passthrough_request":
+                    handlePassthroughRequest();
+                    break;
+                case "inbox_request":
+                    handleInboxRequest();
+                    break;
+                case "presence":
+                    handlePresence(message);
+                    break;
+                case "directory_query":
+                    handleDirectoryQuery(message);
+                    break;
                 default:
                     sendError("unknown_message_type");
             }
-            
+        
         } catch (JsonSyntaxException e) {
             System.err.println("Invalid JSON from " + client.username + ": " + e.getMessage());
             sendError("invalid_json");
         } catch (Exception e) {
             System.err.println("Message processing error for " + client.username + ": " + e.getMessage());
             sendError("processing_error");
+        } finally {
+            if (event != null) {
+                event.finish();
+            }
         }
     }
     
@@ -71,31 +168,177 @@ public class MessageHandler {
             return;
         }
         
+        if (limiter != null && !limiter.allowBind()) {
+            rejectRateLimited();
+            return;
+        }
+        
         String mode = message.get("mode").getAsString();
         String target = Validator.sanitizeUsername(message.get("target").getAsString());
         
         BindManager.BindResult result;
         
         if ("keyless".equals(mode)) {
-            result = BindManager.handleKeylessBind(client.username, target);
+            TrafficCapture.record(TrafficCapture.BIND_KEYLESS, client.username, target, 0);
+            result = binds.handleKeylessBind(client.username, target);
         } else if ("keyed".equals(mode)) {
             if (!JsonUtils.hasField(message, "hash")) {
                 sendError("missing_hash");
                 return;
             }
             String hash = message.get("hash").getAsString();
-            result = BindManager.handleKeyedBind(client.username, target, hash);
+            TrafficCapture.record(TrafficCapture.BIND_KEYED, client.username, target, 0);
+            result = binds.handleKeyedBind(client.username, target, hash);
         } else {
             sendError("invalid_bind_mode");
             return;
         }
         
-        // Send result to requester
-        sendMessage(result.toMessage());
+        // Send result to requester (every device once bound)
+        if (result.success) {
+            router.sendToUser(client.username, result.toMessage());
+        } else {
+            sendMessage(result.toMessage());
+        }
         
         // If bind succeeded, also notify partner
         if (result.success) {
-            MessageRouter.sendToUser(result.partner, result.toMessage());
+            router.sendToUser(result.partner, result.toMessage());
+        }
+    }
+    
+    /**
+     * Handles ephemeral presence signal (typing, receipt, status)
+     * Coalesced per recipient instead of routed like a message
+     */
+    private void handlePresence(JsonObject message) {
+        if (!JsonUtils.hasRequiredFields(message, "kind", "value")) {
+            sendError("invalid_presence");
+            return;
+        }
+        
+        TrafficCapture.record(TrafficCapture.PRESENCE, client.username, null, 0);
+        String error = presence.submit(client.username,
+            message.get("kind").getAsString(), message.get("value").getAsString());
+        if (error != null) {
+            sendError(error);
+        }
+    }
+    
+    /**
+     * Handles search of discoverable online users by name prefix
+     * Paged by cursor: pass the returned "next" as "after" for the next page
+     */
+    private void handleDirectoryQuery(JsonObject message) {
+        String prefix = JsonUtils.getString(message, "prefix", "");
+        String after = JsonUtils.getString(message, "after", null);
+        if (!Validator.isValidUsernamePrefix(prefix) || (after != null && !Validator.isValidUsername(after))) {
+            sendError("invalid_directory_query");
+            return;
+        }
+        
+        int limit;
+        try {
+            limit = Integer.parseInt(JsonUtils.getString(message, "limit",
+                String.valueOf(ServerConfig.DIRECTORY_PAGE_SIZE)));
+        } catch (NumberFormatException e) {
+            sendError("invalid_directory_query");
+            return;
+        }
+        limit = Math.max(1, Math.min(limit, ServerConfig.DIRECTORY_MAX_PAGE_SIZE));
+        
+        // One extra entry tells whether another page exists
+        List<String> users = state.queryDirectory(prefix, after, limit + 1);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("type", "directory");
+        if (users.size() > limit) {
+            users = users.subList(0, limit);
+            response.put("next", users.get(limit - 1));
+        }
+        response.put("users", users);
+        
+        try {
+            session.sendEncrypted(JsonUtils.toJson(response));
+        } catch (Exception e) {
+            System.err.println("Failed to send directory to " + client.username + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Handles opt-in to end-to-end passthrough relay
+     */
+    private void handlePassthroughRequest() {
+        BindManager.BindResult result = binds.handlePassthroughRequest(client.username);
+        
+        if (!result.success) {
+            if (result.waiting) {
+                Map<String, String> msg = new HashMap<>();
+                msg.put("type", "info");
+                msg.put("message", "waiting_for_partner_passthrough");
+                sendMessage(msg);
+            } else {
+                sendError(result.error);
+            }
+            return;
+        }
+        
+        // Notify every device of both partners
+        Map<String, String> msg = new HashMap<>();
+        msg.put("type", "passthrough_enabled");
+        router.sendToUser(client.username, msg);
+        router.sendToUser(result.partner, msg);
+    }
+    
+    /**
+     * Handles opt-in to the offline inbox for the bound pair
+     */
+    private void handleInboxRequest() {
+        if (!inboxAvailable) {
+            sendError("inbox_unavailable");
+            return;
+        }
+        
+        BindManager.BindResult result = binds.handleInboxRequest(client.username);
+        
+        if (!result.success) {
+            if (result.waiting) {
+                Map<String, String> msg = new HashMap<>();
+                msg.put("type", "info");
+                msg.put("message", "waiting_for_partner_inbox");
+                sendMessage(msg);
+            } else {
+                sendError(result.error);
+            }
+            return;
+        }
+        
+        // Notify every device of both partners
+        Map<String, String> msg = new HashMap<>();
+        msg.put("type", "inbox_enabled");
+        router.sendToUser(client.username, msg);
+        router.sendToUser(result.partner, msg);
+    }
+    
+    /**
+     * Handles end-to-end frame: header is verified, payload is never decrypted
+     */
+    private void handlePassthroughFrame(String frame) {
+        try {
+            String blob = client.openPassthrough(frame);
+            if (blob == null) {
+                client.stats.recordDecryptFailure();
+                sendError("invalid_passthrough_frame");
+                return;
+            }
+            
+            MessageRouter.RouteResult result = router.relayPassthrough(client.username, blob);
+            if (!result.success) {
+                sendError(result.error);
+            }
+        } catch (Exception e) {
+            System.err.println("Passthrough error for " + client.username + ": " + e.getMessage());
+            sendError("processing_error");
         }
     }
     
@@ -110,9 +353,21 @@ public class MessageHandler {
         }
         
         String text = message.get("text").getAsString();
+        TrafficCapture.record(TrafficCapture.MESSAGE, client.username, null, text.length());
+        
+        // Messages with an id get sequence numbers and delivery acks
+        if (JsonUtils.hasField(message, "id")) {
+            String messageId = message.get("id").getAsString();
+            if (!Validator.isValidMessageId(messageId)) {
+                sendError("invalid_message_id");
+                return;
+            }
+            sendMessage(deliveries.send(client.username, text, messageId).toMessage(messageId));
+            return;
+        }
         
         // Route message
-        MessageRouter.RouteResult result = MessageRouter.routeMessage(client.username, text);
+        MessageRouter.RouteResult result = router.routeMessage(client.username, text);
         
         // Send error if routing failed
         if (!result.success) {
@@ -120,6 +375,137 @@ public class MessageHandler {
         }
     }
     
+    /**
+     * Handles cumulative delivery ack: every message up to seq has arrived
+     */
+    private void handleAck(JsonObject message) {
+        long seq;
+        try {
+            seq = Long.parseLong(JsonUtils.getString(message, "seq", ""));
+        } catch (NumberFormatException e) {
+            sendError("invalid_ack");
+            return;
+        }
+        deliveries.ack(client.username, seq);
+    }
+    
+    /**
+     * Handles sender's query of which message IDs the server already holds
+     */
+    private void handleDeliverySync() {
+        try {
+            session.sendEncrypted(JsonUtils.toJson(deliveries.sync(client.username)));
+        } catch (Exception e) {
+            System.err.println("Failed to send delivery sync to " + client.username + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Handles batch of chat and control messages in one frame
+     * Whole batch is validated before any entry is processed
+     */
+    private void handleBatch(JsonObject message) {
+        if (!JsonUtils.hasField(message, "messages") || !message.get("messages").isJsonArray()) {
+            sendError("invalid_batch");
+            return;
+        }
+        
+        JsonArray entries = message.getAsJsonArray("messages");
+        if (entries.size() == 0 || entries.size() > ServerConfig.MAX_BATCH_MESSAGES) {
+            sendError("invalid_batch_size");
+            return;
+        }
+        
+        // Validate batch as a unit
+        for (JsonElement element : entries) {
+            if (!isValidBatchEntry(element)) {
+                sendError("invalid_batch");
+                return;
+            }
+        }
+        
+        // Frame already paid for one message
+        if (limiter != null && !limiter.allowMessages(entries.size() - 1)) {
+            rejectRateLimited();
+            return;
+        }
+        TrafficCapture.record(TrafficCapture.BATCH, client.username, null, entries.size());
+        
+        // Consecutive chat entries are relayed together as one frame; entries
+        // with an id go through the delivery tracker for a seq and an ack
+        List<String> pending = new ArrayList<>();
+        for (JsonElement element : entries) {
+            JsonObject entry = element.getAsJsonObject();
+            if ("message".equals(entry.get("type").getAsString())) {
+                String text = entry.get("text").getAsString();
+                if (JsonUtils.hasField(entry, "id")) {
+                    flushBatch(pending);
+                    String messageId = entry.get("id").getAsString();
+                    sendMessage(deliveries.send(client.username, text, messageId).toMessage(messageId));
+                } else {
+                    pending.add(text);
+                }
+            } else {
+                flushBatch(pending);
+                handleBindRequest(entry);
+            }
+        }
+        flushBatch(pending);
+    }
+    
+    /**
+     * Checks a single batch entry is a supported, well-formed message
+     */
+    private boolean isValidBatchEntry(JsonElement element) {
+        if (!element.isJsonObject()) {
+            return false;
+        }
+        
+        JsonObject entry = element.getAsJsonObject();
+        if (!JsonUtils.hasField(entry, "type")) {
+            return false;
+        }
+        
+        switch (entry.get("type").getAsString()) {
+            case "message":
+                return JsonUtils.hasField(entry, "text") &&
+                       Validator.isValidBatchText(entry.get("text").getAsString()) &&
+                       (!JsonUtils.hasField(entry, "id") || Validator.isValidMessageId(entry.get("id").getAsString()));
+            case "bind_request":
+                return JsonUtils.hasRequiredFields(entry, "mode", "target");
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Relays pending chat texts as a single batch frame
+     */
+    private void flushBatch(List<String> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        
+        MessageRouter.RouteResult result = router.routeBatch(client.username, pending);
+        pending.clear();
+        
+        if (!result.success) {
+            sendError(result.error);
+        }
+    }
+    
+    /**
+     * Rejects over-limit frame; repeat offenders are disconnected
+     */
+    private void rejectRateLimited() {
+        if (limiter.strike()) {
+            disconnectRequested = true;
+            System.out.println("✗ Rate limit exceeded repeatedly: " + client);
+            return;
+        }
+        sendError("rate_limited");
+    }
+    
     /**
      * Sends error message to client
      */
@@ -1,93 +1,300 @@
 package protocol;
 
 import client.ClientConnection;
+import client.OutboundQueue;
+import config.ServerConfig;
 import core.ServerState;
-import crypto.CryptoUtils;
 import util.JsonUtils;
 import util.Validator;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Routes chat messages between bound users
+ * Delivers to every connected device of the recipient
  */
 public class MessageRouter {
+    private static final AtomicInteger fanoutThreadId = new AtomicInteger();
+    private static final ExecutorService fanoutPool = Executors.newFixedThreadPool(
+        ServerConfig.FANOUT_THREADS,
+        runnable -> {
+            Thread thread = new Thread(runnable, "fanout-" + fanoutThreadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    );
+    
+    private final ServerState state;
+    private final BindManager binds;
+    private final OfflineInbox inbox;
+    private final boolean asyncRelay;
+    private volatile boolean draining = false;
+    
+    public MessageRouter(ServerState state, BindManager binds) {
+        this(state, binds, null, false);
+    }
+    
+    public MessageRouter(ServerState state, BindManager binds, OfflineInbox inbox, boolean asyncRelay) {
+        this.state = state;
+        this.binds = binds;
+        this.inbox = inbox;
+        this.asyncRelay = asyncRelay;
+    }
+    
+    /**
+     * Refuses every relay from now on; set when the server starts draining
+     * so no new frames join the queues being flushed
+     */
+    public void stopRelays() {
+        draining = true;
+    }
     
     /**
      * Routes message from sender to their bound partner
      */
-    public static RouteResult routeMessage(String sender, String messageText) {
+    public RouteResult routeMessage(String sender, String messageText) {
         // Validate message
         if (!Validator.isValidMessage(messageText)) {
             return RouteResult.error("invalid_message");
         }
         
         // Check if sender is bound
-        String partner = BindManager.getPartner(sender);
+        String partner = binds.getPartner(sender);
         if (partner == null) {
             return RouteResult.error("not_bound");
         }
         
-        // Get partner connection
-        ClientConnection partnerConn = ServerState.users.get(partner);
-        if (partnerConn == null) {
-            return RouteResult.error("partner_offline");
-        }
-        
         // Create relay message
         Map<String, String> relayMsg = new HashMap<>();
         relayMsg.put("type", "message");
         relayMsg.put("from", sender);
         relayMsg.put("text", messageText);
+        return relay(partner, JsonUtils.toJson(relayMsg));
+    }
+    
+    /**
+     * Routes several messages from sender to their partner in one frame
+     * Partner is resolved once and the batch is encrypted once
+     */
+    public RouteResult routeBatch(String sender, List<String> messageTexts) {
+        // Validate all messages before relaying any
+        for (String text : messageTexts) {
+            if (!Validator.isValidMessage(text)) {
+                return RouteResult.error("invalid_message");
+            }
+        }
         
-        try {
-            // Encrypt and send
-            String encrypted = CryptoUtils.encrypt(partnerConn.aesKey, JsonUtils.toJson(relayMsg));
-            partnerConn.out.println(encrypted);
-            return RouteResult.success();
-        } catch (Exception e) {
-            System.err.println("Failed to relay message: " + e.getMessage());
+        // Check if sender is bound
+        String partner = binds.getPartner(sender);
+        if (partner == null) {
+            return RouteResult.error("not_bound");
+        }
+        
+        // Create relay batch
+        List<Map<String, String>> relayed = new ArrayList<>(messageTexts.size());
+        for (String text : messageTexts) {
+            Map<String, String> relayMsg = new HashMap<>();
+            relayMsg.put("type", "message");
+            relayMsg.put("from", sender);
+            relayMsg.put("text", text);
+            relayed.add(relayMsg);
+        }
+        
+        Map<String, Object> batchMsg = new HashMap<>();
+        batchMsg.put("type", "batch");
+        batchMsg.put("from", sender);
+        batchMsg.put("messages", relayed);
+        return relay(partner, JsonUtils.toJson(batchMsg));
+    }
+    
+    RouteResult relay(String partner, String json) {
+        return relay(partner, json, null);
+    }
+    
+    /**
+     * Sends serialized chat frame to every partner device, or to the
+     * offline inbox if partner is parked
+     * With async relay the sender only encrypts and queues; the partner's
+     * writes happen on outbound writer threads, never on the sender's
+     * @param onStored run once a frame kept in the inbox is durable, may be null
+     */
+    RouteResult relay(String partner, String json, Runnable onStored) {
+        if (draining) {
+            return RouteResult.error("server_draining");
+        }
+        
+        List<ClientConnection> partnerDevices = state.getDevices(partner);
+        if (partnerDevices.isEmpty()) {
+            if (inbox != null && inbox.store(partner, json, onStored)) {
+                return RouteResult.stored();
+            }
+            return RouteResult.error("partner_offline");
+        }
+        
+        // Serialized once, encrypted per device
+        int delivered = asyncRelay
+            ? queue(partnerDevices, json, OutboundQueue.Lane.BULK)
+            : deliver(partnerDevices, json, OutboundQueue.Lane.BULK);
+        if (delivered == 0) {
             return RouteResult.error("relay_failed");
         }
+        return RouteResult.success();
+    }
+    
+    /**
+     * Relays opaque end-to-end blob to partner without decrypting it
+     * Only the routing header is re-authenticated per device
+     */
+    public RouteResult relayPassthrough(String sender, String blob) {
+        if (!binds.isPassthrough(sender)) {
+            return RouteResult.error("passthrough_not_enabled");
+        }
+        if (draining) {
+            return RouteResult.error("server_draining");
+        }
+        
+        String partner = binds.getPartner(sender);
+        if (partner == null) {
+            return RouteResult.error("not_bound"); // Unbound since the passthrough check
+        }
+        
+        List<ClientConnection> partnerDevices = state.getDevices(partner);
+        if (partnerDevices.isEmpty()) {
+            return RouteResult.error("partner_offline");
+        }
+        
+        int delivered = 0;
+        for (ClientConnection device : partnerDevices) {
+            try {
+                device.sendPassthrough(blob);
+                delivered++;
+            } catch (Exception e) {
+                System.err.println("Failed to relay passthrough to " + device + ": " + e.getMessage());
+            }
+        }
+        return delivered > 0 ? RouteResult.success() : RouteResult.error("relay_failed");
     }
     
     /**
      * Notifies partner that user disconnected
      */
-    public static void notifyPartnerDisconnected(String disconnectedUser, String partner) {
-        ClientConnection partnerConn = ServerState.users.get(partner);
-        if (partnerConn == null || partnerConn.aesKey == null) {
-            return; // Partner already gone or not secure
+    public void notifyPartnerDisconnected(String disconnectedUser, String partner) {
+        List<ClientConnection> partnerDevices = state.getDevices(partner);
+        if (partnerDevices.isEmpty()) {
+            return; // Partner already gone
         }
         
-        try {
-            Map<String, String> msg = new HashMap<>();
-            msg.put("type", "partner_disconnected");
-            
-            String encrypted = CryptoUtils.encrypt(partnerConn.aesKey, JsonUtils.toJson(msg));
-            partnerConn.out.println(encrypted);
-            
+        Map<String, String> msg = new HashMap<>();
+        msg.put("type", "partner_disconnected");
+        
+        if (deliver(partnerDevices, JsonUtils.toJson(msg), OutboundQueue.Lane.CONTROL) > 0) {
             System.out.println("✓ Notified " + partner + " of disconnect");
-        } catch (Exception e) {
-            System.err.println("Failed to notify partner: " + e.getMessage());
         }
     }
     
     /**
-     * Sends encrypted message to specific user
+     * Tells partner of user about a presence change (e.g. partner_offline)
+     */
+    public void notifyPartner(String username, String type) {
+        String partner = binds.getPartner(username);
+        if (partner == null) {
+            return;
+        }
+        
+        Map<String, String> msg = new HashMap<>();
+        msg.put("type", type);
+        sendToUser(partner, msg);
+    }
+    
+    /**
+     * Sends encrypted control message to specific user
+     * Control lane overtakes queued chat traffic
+     */
+    public boolean sendToUser(String username, Map<String, String> message) {
+        List<ClientConnection> devices = state.getDevices(username);
+        if (devices.isEmpty()) {
+            return false;
+        }
+        
+        return deliver(devices, JsonUtils.toJson(message), OutboundQueue.Lane.CONTROL) > 0;
+    }
+    
+    /**
+     * Queues encrypted control message for specific user without writing on this thread
+     */
+    public boolean queueToUser(String username, Map<String, String> message) {
+        return queue(state.getDevices(username), JsonUtils.toJson(message), OutboundQueue.Lane.CONTROL) > 0;
+    }
+    
+    /**
+     * Encrypts and sends serialized message to every device
+     * Extra devices are encrypted in parallel on the fan-out pool
+     * @return number of devices the message was delivered to
+     */
+    static int deliver(List<ClientConnection> devices, String json, OutboundQueue.Lane lane) {
+        if (devices.size() == 1) {
+            return sendToDevice(devices.get(0), json, lane) ? 1 : 0;
+        }
+        
+        List<Future<Boolean>> pending = new ArrayList<>(devices.size() - 1);
+        for (int i = 1; i < devices.size(); i++) {
+            ClientConnection device = devices.get(i);
+            pending.add(fanoutPool.submit(() -> sendToDevice(device, json, lane)));
+        }
+        
+        int delivered = sendToDevice(devices.get(0), json, lane) ? 1 : 0;
+        for (Future<Boolean> result : pending) {
+            try {
+                if (result.get()) {
+                    delivered++;
+                }
+            } catch (Exception e) {
+                System.err.println("Fan-out failed: " + e.getMessage());
+            }
+        }
+        return delivered;
+    }
+    
+    /**
+     * Encrypts and queues serialized message for every device without
+     * writing on this thread; outbound writer threads do the socket writes
+     * @return number of devices the message was queued for
      */
-    public static boolean sendToUser(String username, Map<String, String> message) {
-        ClientConnection conn = ServerState.users.get(username);
-        if (conn == null || conn.aesKey == null) {
+    static int queue(List<ClientConnection> devices, String json, OutboundQueue.Lane lane) {
+        int queued = 0;
+        for (ClientConnection device : devices) {
+            if (!device.isSecure()) {
+                continue;
+            }
+            try {
+                device.queueEncrypted(json, lane);
+                queued++;
+            } catch (Exception e) {
+                System.err.println("Failed to queue for " + device + ": " + e.getMessage());
+            }
+        }
+        return queued;
+    }
+    
+    /**
+     * Encrypts and sends to a single device
+     */
+    private static boolean sendToDevice(ClientConnection device, String json, OutboundQueue.Lane lane) {
+        if (!device.isSecure()) {
             return false;
         }
         
         try {
-            String encrypted = CryptoUtils.encrypt(conn.aesKey, JsonUtils.toJson(message));
-            conn.out.println(encrypted);
+            device.sendEncrypted(json, lane);
             return true;
         } catch (Exception e) {
-            System.err.println("Failed to send to " + username + ": " + e.getMessage());
+            System.err.println("Failed to send to " + device + ": " + e.getMessage());
             return false;
         }
     }
@@ -97,19 +304,25 @@ public class MessageRouter {
      */
     public static class RouteResult {
         public final boolean success;
+        public final boolean stored; // Kept in offline inbox rather than sent
         public final String error;
         
-        private RouteResult(boolean success, String error) {
+        private RouteResult(boolean success, boolean stored, String error) {
             this.success = success;
+            this.stored = stored;
             this.error = error;
         }
         
         public static RouteResult success() {
-            return new RouteResult(true, null);
+            return new RouteResult(true, false, null);
+        }
+        
+        public static RouteResult stored() {
+            return new RouteResult(true, true, null);
         }
         
         public static RouteResult error(String error) {
-            return new RouteResult(false, error);
+            return new RouteResult(false, false, error);
         }
     }
 }
@@ -0,0 +1,316 @@
+package protocol;
+
+import client.ClientConnection;
+import client.OutboundQueue;
+import config.ServerConfig;
+import core.ServerState;
+import crypto.AESEncryption;
+import crypto.InboxKey;
+import crypto.CryptoUtils;
+import util.JsonUtils;
+import util.PrivateFiles;
+import util.SegmentedLog;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable inbox for parked partners of opted-in pairs
+ * Relayed frames are encrypted under the recipient's inbox key, appended to a
+ * segmented log and replayed in order when the recipient logs back in
+ * Inbox keys mix the device token with a server secret kept in its own
+ * owner-only file, so neither the token nor the log alone opens a record
+ *
+ * Record: type (byte), recipient length (byte), recipient, encrypted frame
+ */
+public class OfflineInbox {
+    private static final byte MESSAGE = 1;
+    private static final byte DELIVERED = 2;
+    
+    private final ServerState state;
+    private final BindManager binds;
+    private final Path directory;
+    private final SegmentedLog log;
+    private byte[] secret;
+    
+    // Recipient -> undelivered records (log order restored on delivery)
+    private final ConcurrentHashMap<String, List<SegmentedLog.Location>> pending = new ConcurrentHashMap<>();
+    
+    // Recipient -> stores still appending; delivery waits them out
+    private final ConcurrentHashMap<String, Integer> storing = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+    
+    public OfflineInbox(ServerState state, BindManager binds, Path directory) {
+        this.state = state;
+        this.binds = binds;
+        this.directory = directory;
+        this.log = new SegmentedLog(directory, ServerConfig.INBOX_SEGMENT_BYTES, ServerConfig.INBOX_COMMIT_DELAY_MS);
+    }
+    
+    /**
+     * Rebuilds pending index from the log and starts retention sweep
+     */
+    public void open() throws IOException {
+        log.open(this::restore);
+        secret = loadSecret(directory.resolve(ServerConfig.INBOX_SECRET_FILE));
+        
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inbox-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleAtFixedRate(this::sweep,
+            ServerConfig.INBOX_SWEEP_MS, ServerConfig.INBOX_SWEEP_MS, TimeUnit.MILLISECONDS);
+        
+        System.out.println("✓ Offline inbox opened (" + getPendingCount() + " pending)");
+    }
+    
+    /**
+     * Reads server secret, creating it on first start
+     */
+    private static byte[] loadSecret(Path file) throws IOException {
+        if (Files.exists(file)) {
+            return Files.readAllBytes(file);
+        }
+        byte[] created = CryptoUtils.randomBytes(ServerConfig.INBOX_SECRET_BYTES);
+        PrivateFiles.writeAtomically(file, created);
+        return created;
+    }
+    
+    /**
+     * Applies one record found on disk
+     * @return false if record is malformed, which ends the scan of its segment
+     */
+    private boolean restore(SegmentedLog.Location location, byte[] record) {
+        if (record.length < 2 || record[1] <= 0 || 2 + record[1] > record.length ||
+            (record[0] != MESSAGE && record[0] != DELIVERED)) {
+            return false;
+        }
+        
+        String recipient = recipientOf(record);
+        if (record[0] == MESSAGE) {
+            add(recipient, location);
+        } else {
+            release(pending.remove(recipient));
+            log.release(location);
+        }
+        return true;
+    }
+    
+    /**
+     * Stores frame for parked recipient once it is written to the log,
+     * without waiting for the group commit
+     * @param onDurable run on the log's commit thread once the frame is on disk, may be null
+     * @return false if recipient is not parked or the append failed
+     */
+    public boolean store(String recipient, String json, Runnable onDurable) {
+        // Counted before the parked check, so delivery cannot miss a store in progress
+        storing.merge(recipient, 1, Integer::sum);
+        try {
+            String token = state.isParked(recipient) ? state.reservedTokens.get(recipient) : null;
+            if (token == null) {
+                return false;
+            }
+            
+            byte[] body = AESEncryption.encrypt(InboxKey.derive(secret, token), json).getBytes(StandardCharsets.UTF_8);
+            add(recipient, log.append(encode(MESSAGE, recipient, body), onDurable));
+            return true;
+        } catch (Exception e) {
+            System.err.println("Failed to store inbox message for " + recipient + ": " + e.getMessage());
+            return false;
+        } finally {
+            storing.computeIfPresent(recipient, (name, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+    
+    /**
+     * Replays stored frames in order to a device that just logged in
+     * Called once the user is no longer parked, so no new store can start;
+     * stores already appending are waited for first
+     * Undelivered rest stays pending if the device falls behind
+     * @return number of frames delivered
+     */
+    public int deliver(ClientConnection client) {
+        awaitStores(client.username);
+        List<SegmentedLog.Location> records = pending.remove(client.username);
+        if (records == null) {
+            return 0;
+        }
+        records.sort(null);
+        
+        int delivered = 0;
+        int next = 0;
+        try {
+            SecretKey key = InboxKey.derive(secret, state.getDeviceToken(client.username));
+            for (; next < records.size(); next++) {
+                String json = open(key, log.read(records.get(next)));
+                if (json != null) {
+                    client.sendReplayed(json);
+                    delivered++;
+                }
+                log.release(records.get(next));
+            }
+            log.release(log.append(encode(DELIVERED, client.username, new byte[0])));
+            
+            if (delivered > 0) {
+                System.out.println("✓ Inbox: delivered " + delivered + " to " + client.username);
+            }
+        } catch (Exception e) {
+            System.err.println("Inbox delivery to " + client.username + " interrupted: " + e.getMessage());
+            for (SegmentedLog.Location location : records.subList(next, records.size())) {
+                add(client.username, location);
+            }
+        }
+        return delivered;
+    }
+    
+    /**
+     * Waits until no store for user is appending
+     */
+    private void awaitStores(String username) {
+        long deadline = System.currentTimeMillis() + ServerConfig.INBOX_STORE_WAIT_MS;
+        while (storing.containsKey(username) && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Decrypts stored frame
+     * @return json, or null if record is gone or was stored for a previous holder of the name
+     */
+    private static String open(SecretKey key, byte[] record) throws Exception {
+        if (record == null) {
+            return null;
+        }
+        int bodyStart = 2 + record[1];
+        try {
+            return AESEncryption.decrypt(key, new String(record, bodyStart, record.length - bodyStart, StandardCharsets.UTF_8));
+        } catch (AEADBadTagException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Dissolves pairs parked longer than retention and compacts the log
+     */
+    private void sweep() {
+        long cutoff = System.currentTimeMillis() - ServerConfig.INBOX_RETENTION_MS;
+        for (Map.Entry<String, Long> entry : state.offlineSince.entrySet()) {
+            if (entry.getValue() > cutoff) {
+                continue;
+            }
+            
+            String username = entry.getKey();
+            String partner = binds.unbindUser(username);
+            discard(username);
+            System.out.println("✗ Inbox expired: " + username);
+            
+            if (partner == null) {
+                continue;
+            }
+            List<ClientConnection> partnerDevices = state.getDevices(partner);
+            if (partnerDevices.isEmpty()) {
+                discard(partner);
+            } else {
+                Map<String, String> msg = new HashMap<>();
+                msg.put("type", "partner_disconnected");
+                MessageRouter.deliver(partnerDevices, JsonUtils.toJson(msg), OutboundQueue.Lane.CONTROL);
+            }
+        }
+        
+        int deleted = log.compact(ServerConfig.INBOX_RETENTION_MS);
+        if (deleted > 0) {
+            System.out.println("✓ Inbox compacted " + deleted + " segments");
+        }
+    }
+    
+    /**
+     * Drops undelivered frames of user for good
+     */
+    private void discard(String username) {
+        List<SegmentedLog.Location> records = pending.remove(username);
+        if (records == null) {
+            return;
+        }
+        release(records);
+        try {
+            log.release(log.append(encode(DELIVERED, username, new byte[0])));
+        } catch (IOException e) {
+            System.err.println("Failed to record inbox discard for " + username + ": " + e.getMessage());
+        }
+    }
+    
+    private void add(String recipient, SegmentedLog.Location location) {
+        pending.compute(recipient, (name, records) -> {
+            List<SegmentedLog.Location> list = records != null ? records : new ArrayList<>();
+            list.add(location);
+            return list;
+        });
+    }
+    
+    private void release(List<SegmentedLog.Location> records) {
+        if (records != null) {
+            records.forEach(log::release);
+        }
+    }
+    
+    private static byte[] encode(byte type, String recipient, byte[] body) {
+        byte[] name = recipient.getBytes(StandardCharsets.UTF_8);
+        byte[] record = new byte[2 + name.length + body.length];
+        record[0] = type;
+        record[1] = (byte) name.length;
+        System.arraycopy(name, 0, record, 2, name.length);
+        System.arraycopy(body, 0, record, 2 + name.length, body.length);
+        return record;
+    }
+    
+    private static String recipientOf(byte[] record) {
+        return new String(record, 2, record[1], StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Stops sweep and closes the log
+     */
+    public void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        log.close();
+        pending.clear();
+    }
+    
+    /**
+     * Gets number of undelivered frames
+     */
+    public int getPendingCount() {
+        int count = 0;
+        for (List<SegmentedLog.Location> records : pending.values()) {
+            count += records.size();
+        }
+        return count;
+    }
+    
+    /**
+     * Gets pending frames and log commit statistics
+     */
+    public String getReport() {
+        return String.format("Inbox: %d pending for %d users | %d segments | %d appends in %d commits",
+            getPendingCount(), pending.size(), log.getSegmentCount(), log.getAppendCount(), log.getCommitCount());
+    }
+}
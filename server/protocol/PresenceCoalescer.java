@@ -0,0 +1,138 @@
+package protocol;
+
+import client.ClientConnection;
+import client.OutboundQueue;
+import config.ServerConfig;
+import core.ServerState;
+import util.JsonUtils;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces ephemeral presence signals per recipient
+ * Only the newest value of each kind is kept and flushed on a short tick
+ * Signals are held in memory only and never persisted
+ */
+public class PresenceCoalescer {
+    private static final Set<String> KINDS = Set.of("typing", "receipt", "status");
+    
+    private final ServerState state;
+    private final BindManager binds;
+    
+    // Recipient username -> pending signals
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService ticker;
+    
+    public PresenceCoalescer(ServerState state, BindManager binds) {
+        this.state = state;
+        this.binds = binds;
+    }
+    
+    /**
+     * Starts flush tick
+     */
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::flush,
+            ServerConfig.PRESENCE_TICK_MS, ServerConfig.PRESENCE_TICK_MS, TimeUnit.MILLISECONDS);
+        
+        System.out.println("✓ Presence coalescer started (" + ServerConfig.PRESENCE_TICK_MS + "ms tick)");
+    }
+    
+    /**
+     * Stops flush tick and drops pending signals
+     */
+    public void shutdown() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        pending.clear();
+    }
+    
+    /**
+     * Records signal from sender for their partner, replacing older value of same kind
+     * @return null on success, otherwise error code
+     */
+    public String submit(String sender, String kind, String value) {
+        if (!KINDS.contains(kind)) {
+            return "invalid_presence_kind";
+        }
+        if (value == null || value.length() > ServerConfig.MAX_PRESENCE_VALUE_LENGTH) {
+            return "invalid_presence_value";
+        }
+        
+        String partner = binds.getPartner(sender);
+        if (partner == null) {
+            return "not_bound";
+        }
+        
+        // Put inside compute so a concurrent flush cannot remove the entry in between
+        pending.compute(partner, (recipient, entry) -> {
+            Pending updated = entry != null ? entry : new Pending(sender);
+            updated.signals.put(kind, value);
+            return updated;
+        });
+        return null;
+    }
+    
+    /**
+     * Sends one presence frame per recipient with newest signals
+     * Devices with chat frames queued are skipped until next tick, so
+     * signals never wait behind or jump ahead of messages; frames are only
+     * queued here, writer threads do the socket writes
+     */
+    private void flush() {
+        for (String recipient : pending.keySet()) {
+            Pending entry = pending.remove(recipient);
+            if (entry == null || !recipient.equals(binds.getPartner(entry.from))) {
+                continue; // Pair dissolved since signal was recorded
+            }
+            
+            List<ClientConnection> devices = state.getDevices(recipient);
+            boolean backlogged = false;
+            for (ClientConnection device : devices) {
+                if (device.outbound.getDepth(OutboundQueue.Lane.BULK) > 0) {
+                    backlogged = true;
+                    break;
+                }
+            }
+            
+            if (backlogged) {
+                // Keep newer signals recorded meanwhile
+                pending.merge(recipient, entry, (newer, older) -> {
+                    older.signals.forEach(newer.signals::putIfAbsent);
+                    return newer;
+                });
+                continue;
+            }
+            
+            Map<String, Object> frame = new HashMap<>();
+            frame.put("type", "presence");
+            frame.put("from", entry.from);
+            frame.put("signals", new HashMap<>(entry.signals));
+            MessageRouter.queue(devices, JsonUtils.toJson(frame), OutboundQueue.Lane.CONTROL);
+        }
+    }
+    
+    /**
+     * Newest signals for one recipient
+     */
+    private static class Pending {
+        final String from;
+        final ConcurrentHashMap<String, String> signals = new ConcurrentHashMap<>();
+        
+        Pending(String from) {
+            this.from = from;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package protocol;
+
+import client.ClientConnection;
+import config.ServerConfig;
+import events.BackpressureEvent;
+import util.TokenBucket;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inbound rate limits of one connection
+ * Frames and bytes are charged before decryption; bind attempts after parsing
+ * Acks move their frame charge to a bucket of their own, so acking a busy
+ * partner never eats into the connection's own message rate
+ */
+public class RateLimiter {
+    private final TokenBucket messages = new TokenBucket(ServerConfig.RATE_MESSAGES_PER_SEC, ServerConfig.RATE_MESSAGE_BURST);
+    private final TokenBucket bytes = new TokenBucket(ServerConfig.RATE_BYTES_PER_SEC, ServerConfig.RATE_BYTE_BURST);
+    private final TokenBucket binds = new TokenBucket(ServerConfig.RATE_BINDS_PER_SEC, ServerConfig.RATE_BIND_BURST);
+    private final TokenBucket acks = new TokenBucket(ServerConfig.RATE_ACKS_PER_SEC, ServerConfig.RATE_ACK_BURST);
+    
+    // Violations allowed before disconnect; refills slowly
+    private final TokenBucket strikes = new TokenBucket(ServerConfig.RATE_STRIKES_PER_SEC, ServerConfig.RATE_STRIKE_BURST);
+    
+    private final Stats stats;
+    private final ClientConnection client;
+    
+    public RateLimiter(Stats stats, ClientConnection client) {
+        this.stats = stats;
+        this.client = client;
+    }
+    
+    /**
+     * Charges one inbound frame of given size
+     */
+    public boolean allowFrame(int frameBytes) {
+        if (!messages.tryAcquire(1)) {
+            return hit(stats.messageHits, "rate_limited_messages");
+        }
+        if (!bytes.tryAcquire(frameBytes)) {
+            return hit(stats.byteHits, "rate_limited_bytes");
+        }
+        return true;
+    }
+    
+    /**
+     * Charges messages beyond the first carried in one frame (batches)
+     */
+    public boolean allowMessages(int count) {
+        return count <= 0 || messages.tryAcquire(count) || hit(stats.messageHits, "rate_limited_messages");
+    }
+    
+    /**
+     * Moves the frame charge of an ack from the message bucket to the ack bucket
+     */
+    public boolean allowAck() {
+        if (!acks.tryAcquire(1)) {
+            return hit(stats.messageHits, "rate_limited_acks");
+        }
+        messages.refund(1);
+        return true;
+    }
+    
+    /**
+     * Charges one bind_request attempt
+     */
+    public boolean allowBind() {
+        return binds.tryAcquire(1) || hit(stats.bindHits, "rate_limited_binds");
+    }
+    
+    /**
+     * Counts a violation against the connection
+     * @return true if the connection should be disconnected
+     */
+    public boolean strike() {
+        if (strikes.tryAcquire(1)) {
+            return false;
+        }
+        stats.disconnects.incrementAndGet();
+        return true;
+    }
+    
+    private boolean hit(AtomicLong counter, String kind) {
+        counter.incrementAndGet();
+        BackpressureEvent.record(kind, client.toString(), 0);
+        return false;
+    }
+    
+    /**
+     * Limit hits across all connections of a server instance
+     */
+    public static class Stats {
+        public final AtomicLong messageHits = new AtomicLong();
+        public final AtomicLong byteHits = new AtomicLong();
+        public final AtomicLong bindHits = new AtomicLong();
+        public final AtomicLong disconnects = new AtomicLong();
+        
+        public String getReport() {
+            return String.format("Rate limited: %d messages | %d bytes | %d binds | %d disconnected",
+                messageHits.get(), byteHits.get(), bindHits.get(), disconnects.get());
+        }
+    }
+}
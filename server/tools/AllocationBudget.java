@@ -0,0 +1,142 @@
+package tools;
+
+import client.ClientConnection;
+import client.ClientSession;
+import config.ServerOptions;
+import core.SynqServer;
+import crypto.AESEncryption;
+import crypto.DHKeyExchange;
+import protocol.MessageHandler;
+import transport.InMemoryTransport;
+import transport.TcpTransport;
+import javax.crypto.KeyAgreement;
+import javax.crypto.SecretKey;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.KeyPair;
+
+/**
+ * Allocation-budget check for the relay and handshake paths
+ * Drives messages through an in-process MessageHandler/MessageRouter pair
+ * and fails (exit 1) when bytes allocated per operation exceed the budget
+ *
+ * Usage: java tools.AllocationBudget [messages] [relay-budget-bytes] [handshake-budget-bytes]
+ */
+public class AllocationBudget {
+    private static final int DEFAULT_MESSAGES = 20000;
+    private static final long DEFAULT_RELAY_BUDGET = 12 * 1024;
+    private static final long DEFAULT_HANDSHAKE_BUDGET = 96 * 1024;
+    private static final int HANDSHAKES = 50;
+    
+    private static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MESSAGES;
+        long relayBudget = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_RELAY_BUDGET;
+        long handshakeBudget = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_HANDSHAKE_BUDGET;
+        
+        long relayBytes = measureRelay(messages);
+        long handshakeBytes = measureHandshake();
+        
+        boolean relayOk = relayBytes <= relayBudget;
+        boolean handshakeOk = handshakeBytes <= handshakeBudget;
+        System.out.printf("Relay:     %d bytes/message (budget %d) %s%n",
+            relayBytes, relayBudget, relayOk ? "OK" : "OVER BUDGET");
+        System.out.printf("Handshake: %d bytes/handshake (budget %d) %s%n",
+            handshakeBytes, handshakeBudget, handshakeOk ? "OK" : "OVER BUDGET");
+        
+        System.exit(relayOk && handshakeOk ? 0 : 1);
+    }
+    
+    /**
+     * Measures bytes allocated per relayed message on the handling thread
+     */
+    private static long measureRelay(int messages) throws Exception {
+        // Instance is never started; connections are wired to it directly
+        SynqServer server = new SynqServer(ServerOptions.embedded(2), new InMemoryTransport());
+        
+        try (ServerSocket listener = new ServerSocket(0, 2, InetAddress.getLoopbackAddress())) {
+            ClientConnection sender = connect(server, listener, "alloc_sender");
+            ClientConnection receiver = connect(server, listener, "alloc_receiver");
+            server.binds.handleKeylessBind(sender.username, receiver.username);
+            server.binds.handleKeylessBind(receiver.username, sender.username);
+            
+            MessageHandler handler = new MessageHandler(sender, new ClientSession(sender, server.state), server);
+            
+            // Client-side encryption is not part of the server's budget
+            String[] frames = new String[messages];
+            for (int i = 0; i < messages; i++) {
+                frames[i] = AESEncryption.encrypt(sender.aesKey,
+                    "{\"type\":\"message\",\"text\":\"allocation budget message " + i + "\"}");
+            }
+            
+            // Warm up so JIT-compiled code is measured
+            for (int i = 0; i < messages / 2; i++) {
+                handler.handleEncryptedMessage(frames[i]);
+            }
+            
+            long threadId = Thread.currentThread().getId();
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = messages / 2; i < messages; i++) {
+                handler.handleEncryptedMessage(frames[i]);
+            }
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+            
+            sender.close();
+            receiver.close();
+            return allocated / (messages - messages / 2);
+        }
+    }
+    
+    /**
+     * Measures bytes allocated per server-side DH handshake
+     */
+    private static long measureHandshake() throws Exception {
+        KeyPair clientKeyPair = DHKeyExchange.generateKeyPair();
+        handshake(clientKeyPair);
+        
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < HANDSHAKES; i++) {
+            handshake(clientKeyPair);
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / HANDSHAKES;
+    }
+    
+    private static SecretKey handshake(KeyPair clientKeyPair) throws Exception {
+        KeyPair serverKeyPair = DHKeyExchange.generateKeyPair();
+        KeyAgreement agreement = DHKeyExchange.initKeyAgreement(serverKeyPair.getPrivate());
+        agreement.doPhase(DHKeyExchange.parsePublicKey(clientKeyPair.getPublic().getEncoded()), true);
+        return DHKeyExchange.deriveAESKey(agreement);
+    }
+    
+    /**
+     * Creates registered, secured loopback connection whose peer discards output
+     */
+    private static ClientConnection connect(SynqServer server, ServerSocket listener, String username) throws Exception {
+        Socket peer = new Socket(listener.getInetAddress(), listener.getLocalPort());
+        ClientConnection connection = new ClientConnection(new TcpTransport.SocketChannel(listener.accept()));
+        
+        Thread sink = new Thread(() -> {
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = peer.getInputStream()) {
+                while (in.read(buffer) != -1) {
+                    // Discard relayed frames
+                }
+            } catch (Exception e) {
+                // Connection closed
+            }
+        }, "sink-" + username);
+        sink.setDaemon(true);
+        sink.start();
+        
+        connection.username = username;
+        connection.aesKey = handshake(DHKeyExchange.generateKeyPair());
+        server.state.registerDevice(username, connection, null);
+        return connection;
+    }
+}
@@ -0,0 +1,133 @@
+package tools;
+
+import client.ClientConnection;
+import client.OutboundQueue;
+import protocol.Announcer;
+import transport.Channel;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.crypto.KeyGenerator;
+
+/**
+ * Measures announcement fan-out to many connections
+ * Recipients write to discarding channels, so the numbers cover serialize,
+ * encrypt and queue work; a probe thread sends relay-sized frames meanwhile
+ * to show what the fan-out costs live traffic
+ *
+ * Usage: java tools.AnnouncementBenchmark [recipients] [paced rate per second]
+ */
+public class AnnouncementBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int pacedRate = args.length > 1 ? Integer.parseInt(args[1]) : count / 5;
+        
+        List<ClientConnection> recipients = new ArrayList<>(count);
+        KeyGenerator keys = KeyGenerator.getInstance("AES");
+        keys.init(128);
+        for (int i = 0; i < count; i++) {
+            ClientConnection client = new ClientConnection(new DiscardChannel());
+            client.aesKey = keys.generateKey();
+            client.username = "announce_" + i;
+            recipients.add(client);
+        }
+        ClientConnection probe = new ClientConnection(new DiscardChannel());
+        probe.aesKey = keys.generateKey();
+        
+        Announcer announcer = new Announcer();
+        
+        // Unmeasured round first so the encrypt path is compiled
+        run(announcer, "warm-up", recipients.subList(0, Math.min(count, 10_000)), 0, probe);
+        
+        Result unpaced = run(announcer, "Maintenance tonight at 02:00 UTC", recipients, 0, probe);
+        Result paced = run(announcer, "Maintenance tonight at 02:00 UTC", recipients, pacedRate, probe);
+        announcer.shutdown();
+        
+        System.out.println("═══════════════════════════════════════");
+        System.out.printf("  Recipients: %d, %d cores%n", count, Runtime.getRuntime().availableProcessors());
+        print("Unpaced", unpaced, 0);
+        print("Paced", paced, pacedRate);
+        System.out.println("═══════════════════════════════════════");
+    }
+    
+    private static void print(String label, Result result, int targetRate) {
+        System.out.printf("  %-8s %d sent in %.0fms (%.0f/s%s), probe p50 %.3fms, p99 %.3fms%n",
+            label + ":", result.sent, result.elapsedMs, result.sent / (result.elapsedMs / 1000),
+            targetRate > 0 ? ", target " + targetRate + "/s" : "", result.probeP50Ms, result.probeP99Ms);
+    }
+    
+    /**
+     * Announces to all recipients while the probe sends one frame per millisecond
+     */
+    private static Result run(Announcer announcer, String text, List<ClientConnection> recipients,
+                              int rate, ClientConnection probe) throws Exception {
+        Announcer.Announcement announcement = announcer.announce(text, recipients, rate);
+        String relay = "{\"type\":\"message\",\"from\":\"probe\",\"text\":\"" + "x".repeat(200) + "\"}";
+        
+        List<Long> latencies = new ArrayList<>();
+        while (!announcement.isFinished()) {
+            long start = System.nanoTime();
+            probe.sendEncrypted(relay, OutboundQueue.Lane.BULK);
+            latencies.add(System.nanoTime() - start);
+            Thread.sleep(1);
+        }
+        announcement.await(0);
+        
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        Result result = new Result();
+        result.sent = announcement.getSent();
+        result.elapsedMs = announcement.getElapsedMs();
+        result.probeP50Ms = percentile(sorted, 0.50) / 1e6;
+        result.probeP99Ms = percentile(sorted, 0.99) / 1e6;
+        return result;
+    }
+    
+    private static long percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+    
+    private static class Result {
+        int sent;
+        double elapsedMs;
+        double probeP50Ms;
+        double probeP99Ms;
+    }
+    
+    /**
+     * Channel that drops everything written to it
+     */
+    private static class DiscardChannel implements Channel {
+        private volatile boolean closed = false;
+        
+        @Override
+        public InputStream getInputStream() {
+            return InputStream.nullInputStream();
+        }
+        
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+        
+        @Override
+        public String getPeerAddress() {
+            return "discard";
+        }
+        
+        @Override
+        public void setReadTimeout(int timeoutMs) {
+        }
+        
+        @Override
+        public void close() {
+            closed = true;
+        }
+        
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package tools;
+
+import client.ProtocolClient;
+import config.ServerConfig;
+import config.ServerOptions;
+import core.SynqServer;
+import util.JsonUtils;
+import com.google.gson.JsonObject;
+import transport.InMemoryTransport;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares relay between many bound pairs with the sender writing to the
+ * partner's socket and with the async hand-off (sender queues and returns)
+ * Each pair streams one way over in-memory pipes; reports throughput,
+ * messages per CPU-second and end-to-end latency percentiles
+ *
+ * Usage: java tools.AsyncRelayBenchmark [pairs] [messages per pair]
+ */
+public class AsyncRelayBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        int pairs = args.length > 0 ? Integer.parseInt(args[0]) : 2 * Runtime.getRuntime().availableProcessors();
+        int messages = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        
+        // Unmeasured round first so both modes run on compiled code
+        run(false, pairs, Math.min(messages, 1000));
+        
+        Result senderWrites = run(false, pairs, messages);
+        Result async = run(true, pairs, messages);
+        
+        System.out.println("═══════════════════════════════════════");
+        System.out.printf("  Pairs: %d, %d messages each, %d cores%n",
+            pairs, messages, Runtime.getRuntime().availableProcessors());
+        print("Sender writes", senderWrites);
+        print("Async relay", async);
+        System.out.println("═══════════════════════════════════════");
+        System.exit(0);
+    }
+    
+    private static void print(String label, Result result) {
+        System.out.printf("  %-14s %.0f msgs/s, %.0f msgs/CPU-s, p50 %.2fms, p99 %.2fms%n",
+            label + ":", result.rate, result.perCpuSecond, result.p50Ms, result.p99Ms);
+    }
+    
+    /**
+     * Binds pairs on a fresh instance and streams messages from every sender at once
+     */
+    private static Result run(boolean asyncRelay, int pairs, int messages) throws Exception {
+        InMemoryTransport transport = new InMemoryTransport();
+        SynqServer server = new SynqServer(new ServerOptions(pairs * 2, ServerConfig.SOCKET_TIMEOUT_MS,
+            null, false, null, asyncRelay, true), transport);
+        server.start();
+        
+        try {
+            ProtocolClient[] senders = new ProtocolClient[pairs];
+            ProtocolClient[] receivers = new ProtocolClient[pairs];
+            for (int i = 0; i < pairs; i++) {
+                senders[i] = new ProtocolClient(transport.connect(), "ar_sender_" + i);
+                receivers[i] = new ProtocolClient(transport.connect(), "ar_receiver_" + i);
+                senders[i].bind(receivers[i].username);
+                receivers[i].bind(senders[i].username);
+                senders[i].awaitType("bind_success");
+                receivers[i].awaitType("bind_success");
+            }
+            
+            long[] latencies = new long[pairs * messages];
+            CountDownLatch done = new CountDownLatch(pairs);
+            for (int i = 0; i < pairs; i++) {
+                startReceiver(receivers[i], latencies, i * messages, messages, done);
+                senders[i].startDraining(null);
+            }
+            
+            long cpuStart = processCpuNanos();
+            long start = System.nanoTime();
+            for (int i = 0; i < pairs; i++) {
+                ProtocolClient sender = senders[i];
+                Thread thread = new Thread(() -> {
+                    try {
+                        for (int m = 0; m < messages; m++) {
+                            Map<String, String> msg = new HashMap<>();
+                            msg.put("type", "message");
+                            msg.put("text", String.valueOf(System.nanoTime()));
+                            sender.send(JsonUtils.toJson(msg));
+                        }
+                    } catch (Exception e) {
+                        System.err.println("Sender failed: " + e.getMessage());
+                    }
+                }, "ar-send-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            
+            if (!done.await(120, TimeUnit.SECONDS)) {
+                System.err.println("✗ " + done.getCount() + " pairs did not finish");
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double cpuSeconds = (processCpuNanos() - cpuStart) / 1e9;
+            
+            for (int i = 0; i < pairs; i++) {
+                senders[i].close();
+                receivers[i].close();
+            }
+            
+            Arrays.sort(latencies);
+            Result result = new Result();
+            result.rate = latencies.length / seconds;
+            result.perCpuSecond = latencies.length / cpuSeconds;
+            result.p50Ms = latencies[latencies.length / 2] / 1e6;
+            result.p99Ms = latencies[latencies.length * 99 / 100] / 1e6;
+            return result;
+        } finally {
+            server.stop();
+        }
+    }
+    
+    /**
+     * Records send-to-receive latency of every relayed message
+     */
+    private static void startReceiver(ProtocolClient receiver, long[] latencies,
+                                      int offset, int count, CountDownLatch done) {
+        Thread thread = new Thread(() -> {
+            try {
+                int received = 0;
+                JsonObject msg;
+                while (received < count && (msg = receiver.receive()) != null) {
+                    if ("message".equals(JsonUtils.getString(msg, "type", ""))) {
+                        latencies[offset + received++] = System.nanoTime() - Long.parseLong(msg.get("text").getAsString());
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Receiver failed: " + e.getMessage());
+            } finally {
+                done.countDown();
+            }
+        }, "ar-recv-" + receiver.username);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+    
+    private static class Result {
+        double rate;
+        double perCpuSecond;
+        double p50Ms;
+        double p99Ms;
+    }
+}
@@ -0,0 +1,198 @@
+package tools;
+
+import client.ProtocolClient;
+import config.ServerConfig;
+import config.ServerOptions;
+import core.HandshakePool;
+import core.SynqServer;
+import util.JsonUtils;
+import com.google.gson.JsonObject;
+import transport.InMemoryTransport;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures relay latency of bound pairs while a connect storm hits the server
+ * Pairs send at a steady pace over in-memory pipes, first on a quiet server
+ * and then while storm threads log in and out back to back; reports relay
+ * p50/p99 of both runs and the handshakes completed and refused meanwhile
+ *
+ * Usage: java tools.ConnectStormBenchmark [pairs] [messages per pair] [storm threads]
+ */
+public class ConnectStormBenchmark {
+    private static final long SEND_INTERVAL_NANOS = 2_000_000;
+    
+    public static void main(String[] args) throws Exception {
+        int pairs = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int messages = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int stormThreads = args.length > 2 ? Integer.parseInt(args[2]) : 4 * ServerConfig.HANDSHAKE_THREADS;
+        
+        HandshakePool.init();
+        
+        // Unmeasured round first so both runs use compiled code
+        run(pairs, Math.min(messages, 500), stormThreads);
+        
+        Result quiet = run(pairs, messages, 0);
+        Result storm = run(pairs, messages, stormThreads);
+        
+        System.out.println("═══════════════════════════════════════");
+        System.out.printf("  Pairs: %d, %d messages each every %dms, %d storm threads%n",
+            pairs, messages, SEND_INTERVAL_NANOS / 1_000_000, stormThreads);
+        print("Quiet", quiet);
+        print("Connect storm", storm);
+        System.out.printf("  Storm: %.0f handshakes/s, %d refused%n",
+            storm.handshakes / storm.seconds, storm.refused);
+        System.out.println("═══════════════════════════════════════");
+        System.exit(0);
+    }
+    
+    private static void print(String label, Result result) {
+        System.out.printf("  %-15s relay p50 %.2fms, p99 %.2fms, max %.2fms%n",
+            label + ":", result.p50Ms, result.p99Ms, result.maxMs);
+    }
+    
+    /**
+     * Binds pairs on a fresh instance and streams at a fixed pace, with storm threads if any
+     */
+    private static Result run(int pairs, int messages, int stormThreads) throws Exception {
+        InMemoryTransport transport = new InMemoryTransport();
+        // Slots are freed only once the server sees a storm client leave, so leave room for stragglers
+        SynqServer server = new SynqServer(new ServerOptions(pairs * 2 + 4 * stormThreads, ServerConfig.SOCKET_TIMEOUT_MS,
+            null, false, null, ServerConfig.ASYNC_RELAY_ENABLED, false), transport);
+        server.start();
+        
+        try {
+            ProtocolClient[] senders = new ProtocolClient[pairs];
+            ProtocolClient[] receivers = new ProtocolClient[pairs];
+            for (int i = 0; i < pairs; i++) {
+                senders[i] = new ProtocolClient(transport.connect(), "cs_sender_" + i);
+                receivers[i] = new ProtocolClient(transport.connect(), "cs_receiver_" + i);
+                senders[i].bind(receivers[i].username);
+                receivers[i].bind(senders[i].username);
+                senders[i].awaitType("bind_success");
+                receivers[i].awaitType("bind_success");
+            }
+            
+            long[] latencies = new long[pairs * messages];
+            CountDownLatch done = new CountDownLatch(pairs);
+            for (int i = 0; i < pairs; i++) {
+                startReceiver(receivers[i], latencies, i * messages, messages, done);
+                senders[i].startDraining(null);
+            }
+            
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicLong handshakes = new AtomicLong();
+            AtomicLong refused = new AtomicLong();
+            for (int t = 0; t < stormThreads; t++) {
+                startStorm(transport, t, running, handshakes, refused);
+            }
+            
+            long start = System.nanoTime();
+            for (int i = 0; i < pairs; i++) {
+                ProtocolClient sender = senders[i];
+                Thread thread = new Thread(() -> {
+                    try {
+                        long next = System.nanoTime();
+                        for (int m = 0; m < messages; m++) {
+                            Map<String, String> msg = new HashMap<>();
+                            msg.put("type", "message");
+                            msg.put("text", String.valueOf(System.nanoTime()));
+                            sender.send(JsonUtils.toJson(msg));
+                            next += SEND_INTERVAL_NANOS;
+                            long wait = next - System.nanoTime();
+                            if (wait > 0) {
+                                TimeUnit.NANOSECONDS.sleep(wait);
+                            }
+                        }
+                    } catch (Exception e) {
+                        System.err.println("Sender failed: " + e.getMessage());
+                    }
+                }, "cs-send-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            
+            if (!done.await(120, TimeUnit.SECONDS)) {
+                System.err.println("✗ " + done.getCount() + " pairs did not finish");
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            running.set(false);
+            
+            for (int i = 0; i < pairs; i++) {
+                senders[i].close();
+                receivers[i].close();
+            }
+            
+            Arrays.sort(latencies);
+            Result result = new Result();
+            result.seconds = seconds;
+            result.p50Ms = latencies[latencies.length / 2] / 1e6;
+            result.p99Ms = latencies[latencies.length * 99 / 100] / 1e6;
+            result.maxMs = latencies[latencies.length - 1] / 1e6;
+            result.handshakes = handshakes.get();
+            result.refused = refused.get();
+            return result;
+        } finally {
+            server.stop();
+        }
+    }
+    
+    /**
+     * Logs in and out back to back until stopped; refused logins are counted
+     */
+    private static void startStorm(InMemoryTransport transport, int index,
+                                   AtomicBoolean running, AtomicLong handshakes, AtomicLong refused) {
+        Thread thread = new Thread(() -> {
+            int n = 0;
+            while (running.get()) {
+                try {
+                    ProtocolClient client = new ProtocolClient(transport.connect(), "cs_storm_" + index + "_" + (n++ % 1000));
+                    handshakes.incrementAndGet();
+                    client.close();
+                } catch (Exception e) {
+                    refused.incrementAndGet();
+                }
+            }
+        }, "cs-storm-" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Records send-to-receive latency of every relayed message
+     */
+    private static void startReceiver(ProtocolClient receiver, long[] latencies,
+                                      int offset, int count, CountDownLatch done) {
+        Thread thread = new Thread(() -> {
+            try {
+                int received = 0;
+                JsonObject msg;
+                while (received < count && (msg = receiver.receive()) != null) {
+                    if ("message".equals(JsonUtils.getString(msg, "type", ""))) {
+                        latencies[offset + received++] = System.nanoTime() - Long.parseLong(msg.get("text").getAsString());
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Receiver failed: " + e.getMessage());
+            } finally {
+                done.countDown();
+            }
+        }, "cs-recv-" + receiver.username);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private static class Result {
+        double seconds;
+        double p50Ms;
+        double p99Ms;
+        double maxMs;
+        long handshakes;
+        long refused;
+    }
+}
@@ -0,0 +1,112 @@
+package tools;
+
+import config.ServerConfig;
+import crypto.AESEncryption;
+import crypto.CryptoUtils;
+import crypto.InboxKey;
+import util.SegmentedLog;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+/**
+ * Measures offline inbox log: append latency under concurrent writers with
+ * group commit, both until the append returns (when the inbox acknowledges)
+ * and until its commit callback runs (durable), then replay speed (scan,
+ * read and decrypt every record)
+ * Runs in a temporary directory that is removed afterwards
+ *
+ * Usage: java tools.InboxBenchmark [writers] [appends per writer]
+ */
+public class InboxBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int perWriter = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        
+        Path directory = Files.createTempDirectory("synq-inbox-bench");
+        SecretKey key = InboxKey.derive(CryptoUtils.randomBytes(ServerConfig.INBOX_SECRET_BYTES), "benchmark-device-token");
+        byte[] record = AESEncryption.encrypt(key,
+            "{\"type\":\"message\",\"from\":\"bench_sender\",\"text\":\"hello from the inbox benchmark\"}")
+            .getBytes(StandardCharsets.UTF_8);
+        
+        try {
+            // Append phase
+            SegmentedLog log = new SegmentedLog(directory, ServerConfig.INBOX_SEGMENT_BYTES, ServerConfig.INBOX_COMMIT_DELAY_MS);
+            log.open((location, payload) -> true);
+            
+            long[] latencies = new long[writers * perWriter];
+            long[] durableLatencies = new long[writers * perWriter];
+            CountDownLatch done = new CountDownLatch(writers);
+            CountDownLatch durable = new CountDownLatch(writers * perWriter);
+            long start = System.nanoTime();
+            for (int w = 0; w < writers; w++) {
+                int base = w * perWriter;
+                Thread writer = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < perWriter; i++) {
+                            long t0 = System.nanoTime();
+                            int slot = base + i;
+                            log.append(record, () -> {
+                                durableLatencies[slot] = System.nanoTime() - t0;
+                                durable.countDown();
+                            });
+                            latencies[slot] = System.nanoTime() - t0;
+                        }
+                    } catch (Exception e) {
+                        System.err.println("Append failed: " + e.getMessage());
+                    } finally {
+                        done.countDown();
+                    }
+                }, "inbox-bench-" + w);
+                writer.start();
+            }
+            done.await();
+            durable.await();
+            double appendSeconds = (System.nanoTime() - start) / 1e9;
+            long commits = log.getCommitCount();
+            int segments = log.getSegmentCount();
+            log.close();
+            
+            // Replay phase: what login delivery does, minus the socket
+            long replayStart = System.nanoTime();
+            SegmentedLog reopened = new SegmentedLog(directory, ServerConfig.INBOX_SEGMENT_BYTES, ServerConfig.INBOX_COMMIT_DELAY_MS);
+            List<SegmentedLog.Location> locations = new ArrayList<>();
+            reopened.open((location, payload) -> locations.add(location));
+            long scanned = System.nanoTime();
+            for (SegmentedLog.Location location : locations) {
+                AESEncryption.decrypt(key, new String(reopened.read(location), StandardCharsets.UTF_8));
+            }
+            long replayed = System.nanoTime();
+            reopened.close();
+            
+            Arrays.sort(latencies);
+            Arrays.sort(durableLatencies);
+            int total = latencies.length;
+            System.out.println("═══════════════════════════════════════");
+            System.out.printf("  Appends:     %d from %d writers, %.0f/s%n", total, writers, total / appendSeconds);
+            System.out.printf("  Acked:       p50 %.3fms, p99 %.3fms, max %.2fms%n",
+                latencies[total / 2] / 1e6, latencies[total * 99 / 100] / 1e6, latencies[total - 1] / 1e6);
+            System.out.printf("  Durable:     p50 %.2fms, p99 %.2fms, max %.2fms%n",
+                durableLatencies[total / 2] / 1e6, durableLatencies[total * 99 / 100] / 1e6,
+                durableLatencies[total - 1] / 1e6);
+            System.out.printf("  Commits:     %d (%.1f appends per fsync), %d segments%n",
+                commits, (double) total / Math.max(1, commits), segments);
+            System.out.printf("  Replay:      %d records, scan %.1fms, read+decrypt %.1fms (%.0f/s)%n",
+                locations.size(), (scanned - replayStart) / 1e6, (replayed - scanned) / 1e6,
+                locations.size() / ((replayed - replayStart) / 1e9));
+            System.out.println("═══════════════════════════════════════");
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
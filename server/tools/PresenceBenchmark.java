@@ -0,0 +1,220 @@
+package tools;
+
+import client.ProtocolClient;
+import config.ServerConfig;
+import config.ServerOptions;
+import core.SynqServer;
+import util.JsonUtils;
+import com.google.gson.JsonObject;
+import transport.InMemoryTransport;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures what a typing-heavy pair costs everyone else
+ * Background pairs stream chat messages, first alone and then next to one
+ * pair whose sender submits typing signals as fast as it can; reports
+ * background throughput, messages per CPU-second and latency, and how many
+ * presence frames the coalescer let through against its one-per-tick bound
+ *
+ * Usage: java tools.PresenceBenchmark [pairs] [messages per pair]
+ */
+public class PresenceBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        int pairs = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int messages = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        
+        // Unmeasured round first so both runs use compiled code
+        run(false, pairs, Math.min(messages, 1000));
+        
+        Result quiet = run(false, pairs, messages);
+        Result typing = run(true, pairs, messages);
+        
+        System.out.println("═══════════════════════════════════════");
+        System.out.printf("  Pairs: %d, %d messages each, %dms presence tick%n",
+            pairs, messages, ServerConfig.PRESENCE_TICK_MS);
+        print("No typing", quiet);
+        print("Typing pair", typing);
+        double bound = typing.seconds * 1000.0 / ServerConfig.PRESENCE_TICK_MS + 1;
+        System.out.printf("  Typing: %d signals sent, %d presence frames delivered (bound %.0f)%n",
+            typing.signals, typing.frames, bound);
+        System.out.println("═══════════════════════════════════════");
+        System.exit(0);
+    }
+    
+    private static void print(String label, Result result) {
+        System.out.printf("  %-13s %.0f msgs/s, %.0f msgs/CPU-s, p50 %.2fms, p99 %.2fms%n",
+            label + ":", result.rate, result.perCpuSecond, result.p50Ms, result.p99Ms);
+    }
+    
+    /**
+     * Streams messages on every background pair, with or without a typing pair alongside
+     */
+    private static Result run(boolean withTyping, int pairs, int messages) throws Exception {
+        InMemoryTransport transport = new InMemoryTransport();
+        SynqServer server = new SynqServer(new ServerOptions(pairs * 2 + 2, ServerConfig.SOCKET_TIMEOUT_MS,
+            null, false, null, false, true), transport);
+        server.start();
+        
+        try {
+            ProtocolClient[] senders = new ProtocolClient[pairs];
+            ProtocolClient[] receivers = new ProtocolClient[pairs];
+            for (int i = 0; i < pairs; i++) {
+                senders[i] = new ProtocolClient(transport.connect(), "pb_sender_" + i);
+                receivers[i] = new ProtocolClient(transport.connect(), "pb_receiver_" + i);
+                bind(senders[i], receivers[i]);
+            }
+            
+            ProtocolClient typist = null;
+            ProtocolClient watcher = null;
+            AtomicLong frames = new AtomicLong();
+            if (withTyping) {
+                typist = new ProtocolClient(transport.connect(), "pb_typist");
+                watcher = new ProtocolClient(transport.connect(), "pb_watcher");
+                bind(typist, watcher);
+                typist.startDraining(null);
+                watcher.startReading(msg -> {
+                    if ("presence".equals(JsonUtils.getString(msg, "type", ""))) {
+                        frames.incrementAndGet();
+                    }
+                });
+            }
+            
+            long[] latencies = new long[pairs * messages];
+            CountDownLatch done = new CountDownLatch(pairs);
+            for (int i = 0; i < pairs; i++) {
+                startReceiver(receivers[i], latencies, i * messages, messages, done);
+                senders[i].startDraining(null);
+            }
+            
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicLong signals = new AtomicLong();
+            if (typist != null) {
+                startTyping(typist, running, signals);
+            }
+            
+            long cpuStart = processCpuNanos();
+            long start = System.nanoTime();
+            for (int i = 0; i < pairs; i++) {
+                ProtocolClient sender = senders[i];
+                Thread thread = new Thread(() -> {
+                    try {
+                        for (int m = 0; m < messages; m++) {
+                            Map<String, String> msg = new HashMap<>();
+                            msg.put("type", "message");
+                            msg.put("text", String.valueOf(System.nanoTime()));
+                            sender.send(JsonUtils.toJson(msg));
+                        }
+                    } catch (Exception e) {
+                        System.err.println("Sender failed: " + e.getMessage());
+                    }
+                }, "pb-send-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            
+            if (!done.await(120, TimeUnit.SECONDS)) {
+                System.err.println("✗ " + done.getCount() + " pairs did not finish");
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double cpuSeconds = (processCpuNanos() - cpuStart) / 1e9;
+            running.set(false);
+            
+            for (int i = 0; i < pairs; i++) {
+                senders[i].close();
+                receivers[i].close();
+            }
+            if (typist != null) {
+                typist.close();
+                watcher.close();
+            }
+            
+            Arrays.sort(latencies);
+            Result result = new Result();
+            result.seconds = seconds;
+            result.rate = latencies.length / seconds;
+            result.perCpuSecond = latencies.length / cpuSeconds;
+            result.p50Ms = latencies[latencies.length / 2] / 1e6;
+            result.p99Ms = latencies[latencies.length * 99 / 100] / 1e6;
+            result.signals = signals.get();
+            result.frames = frames.get();
+            return result;
+        } finally {
+            server.stop();
+        }
+    }
+    
+    private static void bind(ProtocolClient a, ProtocolClient b) throws Exception {
+        a.bind(b.username);
+        b.bind(a.username);
+        a.awaitType("bind_success");
+        b.awaitType("bind_success");
+    }
+    
+    /**
+     * Submits typing signals back to back until stopped
+     */
+    private static void startTyping(ProtocolClient typist, AtomicBoolean running, AtomicLong signals) {
+        Thread thread = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    Map<String, String> msg = new HashMap<>();
+                    msg.put("type", "presence");
+                    msg.put("kind", "typing");
+                    msg.put("value", signals.get() % 2 == 0 ? "on" : "off");
+                    typist.send(JsonUtils.toJson(msg));
+                    signals.incrementAndGet();
+                }
+            } catch (Exception e) {
+                // Connection closed
+            }
+        }, "pb-typing");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Records send-to-receive latency of every relayed message
+     */
+    private static void startReceiver(ProtocolClient receiver, long[] latencies,
+                                      int offset, int count, CountDownLatch done) {
+        Thread thread = new Thread(() -> {
+            try {
+                int received = 0;
+                JsonObject msg;
+                while (received < count && (msg = receiver.receive()) != null) {
+                    if ("message".equals(JsonUtils.getString(msg, "type", ""))) {
+                        latencies[offset + received++] = System.nanoTime() - Long.parseLong(msg.get("text").getAsString());
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Receiver failed: " + e.getMessage());
+            } finally {
+                done.countDown();
+            }
+        }, "pb-recv-" + receiver.username);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+    
+    private static class Result {
+        double seconds;
+        double rate;
+        double perCpuSecond;
+        double p50Ms;
+        double p99Ms;
+        long signals;
+        long frames;
+    }
+}
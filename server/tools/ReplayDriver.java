@@ -0,0 +1,213 @@
+package tools;
+
+import client.ProtocolClient;
+import config.ServerConfig;
+import transport.TcpTransport;
+import util.JsonUtils;
+import util.TrafficCapture;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays a traffic capture against a running server over loopback
+ * Message text is synthetic, stamped with send time to measure relay latency
+ *
+ * Usage: java tools.ReplayDriver <capture-file> [host] [port] [speed]
+ */
+public class ReplayDriver {
+    private static final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java tools.ReplayDriver <capture-file> [host] [port] [speed]");
+            System.exit(1);
+        }
+        String host = args.length > 1 ? args[1] : "localhost";
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : ServerConfig.PORT;
+        double speed = args.length > 3 ? Double.parseDouble(args[3]) : 1.0;
+        
+        List<TrafficCapture.Record> records = TrafficCapture.read(args[0]);
+        System.out.println("Replaying " + records.size() + " events at " + speed + "x against " + host + ":" + port);
+        
+        Map<Integer, ProtocolClient> clients = new HashMap<>();
+        long maxLagNanos = 0;
+        int failures = 0;
+        long start = System.nanoTime();
+        
+        for (TrafficCapture.Record record : records) {
+            long due = start + (long) (record.micros * 1000 / speed);
+            long now = System.nanoTime();
+            if (due > now) {
+                Thread.sleep((due - now) / 1_000_000, (int) ((due - now) % 1_000_000));
+            } else {
+                maxLagNanos = Math.max(maxLagNanos, now - due);
+            }
+            
+            try {
+                replay(record, clients, host, port);
+            } catch (Exception e) {
+                failures++;
+            }
+        }
+        
+        long elapsed = System.nanoTime() - start;
+        Thread.sleep(1000); // Let last relays arrive
+        for (ProtocolClient client : clients.values()) {
+            client.close();
+        }
+        
+        report(records.size(), failures, elapsed, maxLagNanos);
+    }
+    
+    /**
+     * Performs one captured event
+     */
+    private static void replay(TrafficCapture.Record record, Map<Integer, ProtocolClient> clients,
+                               String host, int port) throws Exception {
+        ProtocolClient client = clients.get(record.user);
+        switch (record.kind) {
+            case TrafficCapture.LOGIN:
+                if (client == null) {
+                    clients.put(record.user, connect(host, port, nameOf(record.user)));
+                }
+                return;
+            case TrafficCapture.DISCONNECT:
+                if (client != null) {
+                    clients.remove(record.user).close();
+                }
+                return;
+            default:
+                break;
+        }
+        
+        if (client == null) {
+            return; // Login was before capture started
+        }
+        
+        Map<String, Object> msg = new HashMap<>();
+        switch (record.kind) {
+            case TrafficCapture.BIND_KEYLESS:
+            case TrafficCapture.BIND_KEYED:
+                msg.put("type", "bind_request");
+                msg.put("target", nameOf(record.peer));
+                if (record.kind == TrafficCapture.BIND_KEYED) {
+                    msg.put("mode", "keyed");
+                    msg.put("hash", pairHash(record.user, record.peer));
+                } else {
+                    msg.put("mode", "keyless");
+                }
+                break;
+            case TrafficCapture.MESSAGE:
+                msg.put("type", "message");
+                msg.put("text", syntheticText(record.size));
+                break;
+            case TrafficCapture.BATCH:
+                List<Map<String, String>> entries = new ArrayList<>();
+                for (int i = 0; i < record.size; i++) {
+                    Map<String, String> entry = new HashMap<>();
+                    entry.put("type", "message");
+                    entry.put("text", syntheticText(0));
+                    entries.add(entry);
+                }
+                msg.put("type", "batch");
+                msg.put("messages", entries);
+                break;
+            case TrafficCapture.PRESENCE:
+                msg.put("type", "presence");
+                msg.put("kind", "typing");
+                msg.put("value", "true");
+                break;
+            default:
+                return;
+        }
+        client.send(JsonUtils.toJson(msg));
+    }
+    
+    private static String nameOf(int userId) {
+        return "replay_" + userId;
+    }
+    
+    /**
+     * Same synthetic key hash for both sides of a keyed bind
+     */
+    private static String pairHash(int a, int b) throws Exception {
+        String pair = "replay:" + Math.min(a, b) + ":" + Math.max(a, b);
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(pair.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte value : digest) {
+            hex.append(String.format("%02x", value));
+        }
+        return hex.toString();
+    }
+    
+    /**
+     * Builds text of captured length, stamped with send time
+     */
+    private static String syntheticText(int length) {
+        StringBuilder text = new StringBuilder("#").append(System.nanoTime()).append('#');
+        int target = Math.min(Math.max(length, text.length()), ServerConfig.MAX_MESSAGE_LENGTH);
+        while (text.length() < target) {
+            text.append('x');
+        }
+        return text.toString();
+    }
+    
+    private static void report(int events, int failures, long elapsedNanos, long maxLagNanos) {
+        List<Long> sorted;
+        synchronized (latencies) {
+            sorted = new ArrayList<>(latencies);
+        }
+        Collections.sort(sorted);
+        
+        double seconds = elapsedNanos / 1e9;
+        System.out.println("═══════════════════════════════════════");
+        System.out.printf("  Events:      %d (%d failed) in %.2fs, %.0f events/s%n",
+            events, failures, seconds, events / seconds);
+        System.out.printf("  Max lag:     %.2fms behind schedule%n", maxLagNanos / 1e6);
+        System.out.printf("  Delivered:   %d messages%n", sorted.size());
+        if (!sorted.isEmpty()) {
+            System.out.printf("  Latency:     p50 %.2fms | p99 %.2fms | max %.2fms%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.99), sorted.get(sorted.size() - 1) / 1e6);
+        }
+        System.out.println("═══════════════════════════════════════");
+    }
+    
+    private static double percentile(List<Long> sorted, double p) {
+        return sorted.get(Math.min(sorted.size() - 1, (int) (sorted.size() * p))) / 1e6;
+    }
+    
+    /**
+     * Logs in over TCP and records relay latency of every stamped message received
+     */
+    private static ProtocolClient connect(String host, int port, String username) throws Exception {
+        ProtocolClient client = new ProtocolClient(new TcpTransport.SocketChannel(new Socket(host, port)), username);
+        client.startReading(msg -> {
+            String type = JsonUtils.getString(msg, "type", "");
+            if ("message".equals(type)) {
+                recordLatency(msg);
+            } else if ("batch".equals(type)) {
+                for (JsonElement entry : msg.getAsJsonArray("messages")) {
+                    recordLatency(entry.getAsJsonObject());
+                }
+            }
+        });
+        return client;
+    }
+    
+    private static void recordLatency(JsonObject msg) {
+        String text = JsonUtils.getString(msg, "text", "");
+        int end = text.indexOf('#', 1);
+        if (text.startsWith("#") && end > 0) {
+            latencies.add(System.nanoTime() - Long.parseLong(text.substring(1, end)));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package tools;
+
+import util.ByteScan;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Differential check and throughput comparison of the byte scan kernels
+ * Random inputs must give the same answer from the scalar kernels, the
+ * vector kernels and the original regex/loop behaviour (exit 1 otherwise);
+ * then each scan is timed on frame-sized inputs
+ *
+ * Needs the SIMD build (see README)
+ * Usage: java --add-modules jdk.incubator.vector tools.ScanBenchmark [cases] [iterations]
+ */
+public class ScanBenchmark {
+    private static final Pattern USERNAME_PATTERN = Pattern.compile("^[a-zA-Z0-9_]+$");
+    private static final Pattern MESSAGE_ID_PATTERN = Pattern.compile("^[a-zA-Z0-9_-]+$");
+    private static final Pattern HEX_PATTERN = Pattern.compile("^[a-fA-F0-9]+$");
+    private static final String ALPHABET = "azAZ09_-fFgG/+=\n\r {}\"é€\u0000\u007f";
+    
+    private static volatile long sink;
+    
+    public static void main(String[] args) {
+        int cases = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        
+        ByteScan.Kernel scalar = ByteScan.SCALAR;
+        ByteScan.Kernel vector = ByteScan.loadVector();
+        if (vector == null) {
+            System.out.println("✗ Vector kernels unavailable; build simd/ and run with --add-modules jdk.incubator.vector");
+            System.exit(1);
+        }
+        
+        int mismatches = check(scalar, vector, cases);
+        System.out.printf("Differential: %d cases, %d mismatches %s%n", cases, mismatches, mismatches == 0 ? "OK" : "FAILED");
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+        
+        byte[] shortLine = base64Line(200);
+        byte[] longLine = base64Line(6800);
+        String username = "user_name_42";
+        String hash = "a".repeat(32) + "0123456789ABCDEFabcdef0123456789";
+        
+        System.out.println("═══════════════════════════════════════");
+        System.out.printf("  %-24s %10s %10s%n", "ns/op", scalar.describe(), vector.describe());
+        compare("newline, 200B line", iterations,
+            () -> scalar.indexOf(shortLine, 0, shortLine.length, (byte) '\n'),
+            () -> vector.indexOf(shortLine, 0, shortLine.length, (byte) '\n'));
+        compare("newline, 6.8KB line", iterations / 20,
+            () -> scalar.indexOf(longLine, 0, longLine.length, (byte) '\n'),
+            () -> vector.indexOf(longLine, 0, longLine.length, (byte) '\n'));
+        compare("username, 12 chars", iterations,
+            () -> scalar.allInClass(username, ByteScan.CharClass.USERNAME) ? 1 : 0,
+            () -> vector.allInClass(username, ByteScan.CharClass.USERNAME) ? 1 : 0);
+        compare("username, regex", iterations,
+            () -> USERNAME_PATTERN.matcher(username).matches() ? 1 : 0,
+            () -> USERNAME_PATTERN.matcher(username).matches() ? 1 : 0);
+        compare("hash, 64 hex", iterations,
+            () -> scalar.allInClass(hash, ByteScan.CharClass.HEX) ? 1 : 0,
+            () -> vector.allInClass(hash, ByteScan.CharClass.HEX) ? 1 : 0);
+        compare("hash, regex", iterations,
+            () -> HEX_PATTERN.matcher(hash).matches() ? 1 : 0,
+            () -> HEX_PATTERN.matcher(hash).matches() ? 1 : 0);
+        System.out.println("═══════════════════════════════════════");
+    }
+    
+    /**
+     * Compares kernels with each other and with the reference behaviour
+     * @return number of disagreeing cases
+     */
+    private static int check(ByteScan.Kernel scalar, ByteScan.Kernel vector, int cases) {
+        Random random = new Random(42);
+        int mismatches = 0;
+        for (int n = 0; n < cases; n++) {
+            byte[] data = new byte[random.nextInt(300)];
+            for (int i = 0; i < data.length; i++) {
+                // Mostly Base64 text, sometimes a newline or a high byte
+                int pick = random.nextInt(100);
+                data[i] = pick < 2 ? (byte) '\n' : pick < 4 ? (byte) (0x80 | random.nextInt(128)) : (byte) ('A' + random.nextInt(26));
+            }
+            int from = data.length == 0 ? 0 : random.nextInt(data.length);
+            int to = from + (data.length == from ? 0 : random.nextInt(data.length - from + 1));
+            
+            int expectedIndex = -1;
+            for (int i = from; i < to; i++) {
+                if (expectedIndex < 0 && data[i] == '\n') {
+                    expectedIndex = i;
+                }
+            }
+            if (scalar.indexOf(data, from, to, (byte) '\n') != expectedIndex ||
+                vector.indexOf(data, from, to, (byte) '\n') != expectedIndex) {
+                mismatches++;
+            }
+            
+            String text = randomText(random, random.nextInt(90) + 1);
+            mismatches += checkClass(scalar, vector, text, ByteScan.CharClass.USERNAME, USERNAME_PATTERN);
+            mismatches += checkClass(scalar, vector, text, ByteScan.CharClass.MESSAGE_ID, MESSAGE_ID_PATTERN);
+            mismatches += checkClass(scalar, vector, text, ByteScan.CharClass.HEX, HEX_PATTERN);
+        }
+        return mismatches;
+    }
+    
+    private static int checkClass(ByteScan.Kernel scalar, ByteScan.Kernel vector, String text,
+                                  ByteScan.CharClass charClass, Pattern reference) {
+        boolean expected = reference.matcher(text).matches();
+        boolean agree = scalar.allInClass(text, charClass) == expected && vector.allInClass(text, charClass) == expected;
+        if (!agree) {
+            System.out.println("  Mismatch for " + charClass + ": \"" + text + "\"");
+        }
+        return agree ? 0 : 1;
+    }
+    
+    /**
+     * Builds text that is usually all in one class, with an odd character mixed in
+     */
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        boolean clean = random.nextBoolean();
+        for (int i = 0; i < length; i++) {
+            text.append(clean ? "abcdef0123456789"
+                .charAt(random.nextInt(16)) : ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+    
+    private static byte[] base64Line(int length) {
+        byte[] line = new byte[length + 1];
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        Random random = new Random(7);
+        for (int i = 0; i < length; i++) {
+            line[i] = (byte) alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        line[length] = '\n';
+        return line;
+    }
+    
+    private static void compare(String label, int iterations, Scan scalar, Scan vector) {
+        // Both sides run twice; the first pass compiles them
+        time(scalar, iterations);
+        time(vector, iterations);
+        System.out.printf("  %-24s %10.1f %10.1f%n", label, time(scalar, iterations), time(vector, iterations));
+    }
+    
+    private static double time(Scan scan, int iterations) {
+        long total = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            total += scan.run();
+        }
+        sink = total;
+        return (System.nanoTime() - start) / (double) iterations;
+    }
+    
+    private interface Scan {
+        long run();
+    }
+}
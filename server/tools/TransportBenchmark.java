@@ -0,0 +1,130 @@
+package tools;
+
+import client.ProtocolClient;
+import config.ServerOptions;
+import core.SynqServer;
+import util.JsonUtils;
+import transport.Channel;
+import transport.CompositeTransport;
+import transport.InMemoryTransport;
+import transport.TcpTransport;
+import transport.Transport;
+import transport.WebSocketTransport;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures handshake and relay throughput of an embedded server instance
+ * "memory" drives the stack over in-process pipes, "tcp" and "websocket"
+ * over loopback on ephemeral ports; "mixed" serves both from one instance and
+ * alternates clients between them, so the relay goes TCP to WebSocket
+ *
+ * Usage: java tools.TransportBenchmark [memory|tcp|websocket|mixed] [handshakes] [messages]
+ */
+public class TransportBenchmark {
+    private static final int MAX_CLIENTS = 1000;
+    private static final AtomicInteger opened = new AtomicInteger();
+    
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "memory";
+        int handshakes = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int messages = args.length > 2 ? Integer.parseInt(args[2]) : 50000;
+        
+        Transport transport;
+        switch (mode) {
+            case "tcp":
+                transport = new TcpTransport(0);
+                break;
+            case "websocket":
+                transport = new WebSocketTransport(0);
+                break;
+            case "mixed":
+                transport = new CompositeTransport(new TcpTransport(0), new WebSocketTransport(0));
+                break;
+            default:
+                transport = new InMemoryTransport();
+        }
+        SynqServer server = new SynqServer(ServerOptions.embedded(MAX_CLIENTS), transport);
+        server.start();
+        
+        try {
+            double handshakeRate = measureHandshakes(transport, handshakes);
+            double relayRate = measureRelay(transport, messages);
+            
+            System.out.println("═══════════════════════════════════════");
+            System.out.printf("  Transport:   %s%n", transport.describe());
+            System.out.printf("  Handshakes:  %.0f/s (%d sequential logins)%n", handshakeRate, handshakes);
+            System.out.printf("  Relay:       %.0f messages/s (%d messages)%n", relayRate, messages);
+            System.out.println("═══════════════════════════════════════");
+        } finally {
+            server.stop();
+        }
+        System.exit(0);
+    }
+    
+    /**
+     * Logs in and out sequentially, one combined handshake each
+     */
+    private static double measureHandshakes(Transport transport, int count) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            ProtocolClient client = new ProtocolClient(open(transport), "bench_hs_" + i);
+            client.close();
+        }
+        return count / ((System.nanoTime() - start) / 1e9);
+    }
+    
+    /**
+     * Relays messages between a bound pair until all have arrived
+     */
+    private static double measureRelay(Transport transport, int count) throws Exception {
+        ProtocolClient sender = new ProtocolClient(open(transport), "bench_sender");
+        ProtocolClient receiver = new ProtocolClient(open(transport), "bench_receiver");
+        sender.bind(receiver.username);
+        receiver.bind(sender.username);
+        sender.awaitType("bind_success");
+        receiver.awaitType("bind_success");
+        
+        CountDownLatch delivered = new CountDownLatch(count);
+        receiver.startDraining(delivered);
+        sender.startDraining(null);
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Map<String, String> msg = new HashMap<>();
+            msg.put("type", "message");
+            msg.put("text", "benchmark message " + i);
+            sender.send(JsonUtils.toJson(msg));
+        }
+        if (!delivered.await(60, TimeUnit.SECONDS)) {
+            System.err.println("✗ Only " + (count - delivered.getCount()) + " of " + count + " messages arrived");
+        }
+        double rate = (count - delivered.getCount()) / ((System.nanoTime() - start) / 1e9);
+        
+        sender.close();
+        receiver.close();
+        return rate;
+    }
+    
+    /**
+     * Opens client channel on any transport, alternating between combined ones
+     */
+    static Channel open(Transport transport) throws Exception {
+        if (transport instanceof CompositeTransport) {
+            List<Transport> parts = ((CompositeTransport) transport).getParts();
+            return open(parts.get(opened.getAndIncrement() % parts.size()));
+        }
+        if (transport instanceof InMemoryTransport) {
+            return ((InMemoryTransport) transport).connect();
+        }
+        if (transport instanceof WebSocketTransport) {
+            return WebSocketTransport.connect("localhost", ((WebSocketTransport) transport).getPort());
+        }
+        return new TcpTransport.SocketChannel(new Socket("localhost", ((TcpTransport) transport).getPort()));
+    }
+}
@@ -0,0 +1,16 @@
+package transport;
+
+import java.io.IOException;
+
+/**
+ * Input stream of whole messages, some carrying raw binary payloads
+ * Lets the line protocol take ciphertext without a Base64 round trip
+ */
+public interface BinaryInput {
+    
+    /**
+     * Takes next message if it is binary, waiting for one to arrive
+     * @return payload, or null if the next message is text (left for read) or the peer closed
+     */
+    byte[] readBinary() throws IOException;
+}
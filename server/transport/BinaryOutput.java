@@ -0,0 +1,12 @@
+package transport;
+
+import java.io.IOException;
+
+/**
+ * Output stream that can send one frame as a raw binary message
+ * Lets the line protocol send ciphertext without Base64 encoding it
+ */
+public interface BinaryOutput {
+    
+    void writeBinary(byte[] data, int offset, int length) throws IOException;
+}
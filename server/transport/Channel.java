@@ -0,0 +1,30 @@
+package transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Bidirectional byte stream to one client
+ * Hides whether bytes travel over a socket or in memory
+ */
+public interface Channel {
+    
+    InputStream getInputStream() throws IOException;
+    
+    OutputStream getOutputStream() throws IOException;
+    
+    /**
+     * Gets printable address of the remote end
+     */
+    String getPeerAddress();
+    
+    /**
+     * Sets how long a read may block before timing out (0 = forever)
+     */
+    void setReadTimeout(int timeoutMs) throws IOException;
+    
+    void close() throws IOException;
+    
+    boolean isClosed();
+}
@@ -0,0 +1,50 @@
+package transport;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Several transports feeding one server instance
+ * e.g. native clients over TCP and browsers over WebSocket sharing state
+ */
+public class CompositeTransport implements Transport {
+    private final List<Transport> parts;
+    
+    public CompositeTransport(Transport... parts) {
+        this.parts = List.of(parts);
+    }
+    
+    /**
+     * Starts every part; already started parts are stopped if one fails
+     */
+    @Override
+    public void start(Consumer<Channel> acceptor) throws IOException {
+        for (int i = 0; i < parts.size(); i++) {
+            try {
+                parts.get(i).start(acceptor);
+            } catch (IOException e) {
+                parts.subList(0, i).forEach(Transport::stop);
+                throw e;
+            }
+        }
+    }
+    
+    @Override
+    public void stop() {
+        parts.forEach(Transport::stop);
+    }
+    
+    /**
+     * Gets the combined transports
+     */
+    public List<Transport> getParts() {
+        return parts;
+    }
+    
+    @Override
+    public String describe() {
+        return parts.stream().map(Transport::describe).collect(Collectors.joining(", "));
+    }
+}
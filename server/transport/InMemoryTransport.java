@@ -0,0 +1,220 @@
+package transport;
+
+import config.ServerConfig;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Transport over in-process byte pipes
+ * Lets the protocol stack be driven without kernel sockets
+ */
+public class InMemoryTransport implements Transport {
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile Consumer<Channel> acceptor;
+    
+    @Override
+    public void start(Consumer<Channel> acceptor) {
+        this.acceptor = acceptor;
+    }
+    
+    @Override
+    public void stop() {
+        acceptor = null;
+    }
+    
+    @Override
+    public String describe() {
+        return "in-memory";
+    }
+    
+    /**
+     * Opens connection to the server
+     * @return client end of the new channel
+     */
+    public Channel connect() throws IOException {
+        Consumer<Channel> target = acceptor;
+        if (target == null) {
+            throw new ConnectException("Transport not accepting connections");
+        }
+        
+        Pipe toServer = new Pipe(ServerConfig.MEMORY_PIPE_CAPACITY);
+        Pipe toClient = new Pipe(ServerConfig.MEMORY_PIPE_CAPACITY);
+        String name = "memory-" + nextId.incrementAndGet();
+        
+        target.accept(new PipeChannel(toServer, toClient, name));
+        return new PipeChannel(toClient, toServer, "server");
+    }
+    
+    /**
+     * Bounded single-direction byte buffer
+     * Writers block while full, readers block while empty
+     */
+    private static class Pipe {
+        private final byte[] buffer;
+        private int readPos;
+        private int count;
+        private boolean closed;
+        
+        Pipe(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+        
+        synchronized void write(byte[] data, int off, int len) throws IOException {
+            while (len > 0) {
+                while (count == buffer.length && !closed) {
+                    waitUninterruptibly(0);
+                }
+                if (closed) {
+                    throw new IOException("Pipe closed");
+                }
+                
+                int writePos = (readPos + count) % buffer.length;
+                int chunk = Math.min(len, Math.min(buffer.length - count, buffer.length - writePos));
+                System.arraycopy(data, off, buffer, writePos, chunk);
+                count += chunk;
+                off += chunk;
+                len -= chunk;
+                notifyAll();
+            }
+        }
+        
+        /**
+         * @return bytes read, or -1 once closed and drained
+         */
+        synchronized int read(byte[] data, int off, int len, int timeoutMs) throws IOException {
+            long deadline = timeoutMs > 0 ? System.currentTimeMillis() + timeoutMs : 0;
+            while (count == 0 && !closed) {
+                long remaining = deadline > 0 ? deadline - System.currentTimeMillis() : 0;
+                if (deadline > 0 && remaining <= 0) {
+                    throw new SocketTimeoutException("Read timed out");
+                }
+                waitUninterruptibly(remaining);
+            }
+            if (count == 0) {
+                return -1;
+            }
+            
+            int chunk = Math.min(len, Math.min(count, buffer.length - readPos));
+            System.arraycopy(buffer, readPos, data, off, chunk);
+            readPos = (readPos + chunk) % buffer.length;
+            count -= chunk;
+            notifyAll();
+            return chunk;
+        }
+        
+        synchronized int available() {
+            return count;
+        }
+        
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+        
+        synchronized boolean isClosed() {
+            return closed;
+        }
+        
+        private void waitUninterruptibly(long timeoutMs) throws IOException {
+            try {
+                wait(timeoutMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting on pipe");
+            }
+        }
+    }
+    
+    /**
+     * One end of an in-memory connection
+     */
+    private static class PipeChannel implements Channel {
+        private final Pipe in;
+        private final Pipe out;
+        private final String peerAddress;
+        private volatile int readTimeoutMs;
+        
+        private final InputStream inputStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                int n = read(single, 0, 1);
+                return n < 0 ? -1 : single[0] & 0xFF;
+            }
+            
+            @Override
+            public int read(byte[] data, int off, int len) throws IOException {
+                return len == 0 ? 0 : in.read(data, off, len, readTimeoutMs);
+            }
+            
+            @Override
+            public int available() {
+                return in.available();
+            }
+            
+            @Override
+            public void close() {
+                PipeChannel.this.close();
+            }
+        };
+        
+        private final OutputStream outputStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+            
+            @Override
+            public void write(byte[] data, int off, int len) throws IOException {
+                out.write(data, off, len);
+            }
+            
+            @Override
+            public void close() {
+                out.close();
+            }
+        };
+        
+        PipeChannel(Pipe in, Pipe out, String peerAddress) {
+            this.in = in;
+            this.out = out;
+            this.peerAddress = peerAddress;
+        }
+        
+        @Override
+        public InputStream getInputStream() {
+            return inputStream;
+        }
+        
+        @Override
+        public OutputStream getOutputStream() {
+            return outputStream;
+        }
+        
+        @Override
+        public String getPeerAddress() {
+            return peerAddress;
+        }
+        
+        @Override
+        public void setReadTimeout(int timeoutMs) {
+            this.readTimeoutMs = timeoutMs;
+        }
+        
+        @Override
+        public void close() {
+            in.close();
+            out.close();
+        }
+        
+        @Override
+        public boolean isClosed() {
+            return in.isClosed() && out.isClosed();
+        }
+    }
+}
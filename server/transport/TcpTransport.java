@@ -0,0 +1,111 @@
+package transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.function.Consumer;
+
+/**
+ * Transport over TCP sockets
+ * Port 0 binds an ephemeral port, see getPort()
+ */
+public class TcpTransport implements Transport {
+    private final int requestedPort;
+    private volatile ServerSocket listener;
+    
+    public TcpTransport(int port) {
+        this.requestedPort = port;
+    }
+    
+    @Override
+    public void start(Consumer<Channel> acceptor) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(requestedPort);
+        listener = serverSocket;
+        
+        Thread acceptThread = new Thread(() -> acceptLoop(serverSocket, acceptor), "accept-" + getPort());
+        acceptThread.start();
+    }
+    
+    /**
+     * Accepts sockets until listener is closed
+     */
+    private void acceptLoop(ServerSocket serverSocket, Consumer<Channel> acceptor) {
+        while (!serverSocket.isClosed()) {
+            try {
+                acceptor.accept(new SocketChannel(serverSocket.accept()));
+            } catch (Exception e) {
+                if (serverSocket.isClosed()) {
+                    break;
+                }
+                System.err.println("Error accepting connection: " + e.getMessage());
+            }
+        }
+    }
+    
+    @Override
+    public void stop() {
+        try {
+            if (listener != null) {
+                listener.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing listener: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Gets bound port, or requested port before start
+     */
+    public int getPort() {
+        ServerSocket serverSocket = listener;
+        return serverSocket != null ? serverSocket.getLocalPort() : requestedPort;
+    }
+    
+    @Override
+    public String describe() {
+        return "tcp://0.0.0.0:" + getPort();
+    }
+    
+    /**
+     * Channel backed by an accepted socket
+     */
+    public static class SocketChannel implements Channel {
+        private final Socket socket;
+        
+        public SocketChannel(Socket socket) {
+            this.socket = socket;
+        }
+        
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return socket.getInputStream();
+        }
+        
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return socket.getOutputStream();
+        }
+        
+        @Override
+        public String getPeerAddress() {
+            return socket.getInetAddress().getHostAddress();
+        }
+        
+        @Override
+        public void setReadTimeout(int timeoutMs) throws IOException {
+            socket.setSoTimeout(timeoutMs);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+        
+        @Override
+        public boolean isClosed() {
+            return socket.isClosed();
+        }
+    }
+}
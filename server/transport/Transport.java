@@ -0,0 +1,25 @@
+package transport;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Source of client channels for a server instance
+ */
+public interface Transport {
+    
+    /**
+     * Starts accepting connections, handing each new channel to the acceptor
+     */
+    void start(Consumer<Channel> acceptor) throws IOException;
+    
+    /**
+     * Stops accepting connections; open channels are left alone
+     */
+    void stop();
+    
+    /**
+     * Gets printable description of where clients connect
+     */
+    String describe();
+}
@@ -0,0 +1,276 @@
+package transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * RFC 6455 opening handshake and frame codec
+ * Covers what Synq needs: no extensions or subprotocols
+ */
+public class WebSocketCodec {
+    public static final int OP_CONTINUATION = 0x0;
+    public static final int OP_TEXT = 0x1;
+    public static final int OP_BINARY = 0x2;
+    public static final int OP_CLOSE = 0x8;
+    public static final int OP_PING = 0x9;
+    public static final int OP_PONG = 0xA;
+    
+    public static final int CLOSE_NORMAL = 1000;
+    public static final int CLOSE_PROTOCOL_ERROR = 1002;
+    public static final int CLOSE_TOO_BIG = 1009;
+    
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int MAX_HEADER_BYTES = 8192;
+    private static final SecureRandom random = new SecureRandom();
+    
+    /**
+     * Reads client upgrade request and answers 101, or an HTTP error
+     * A browser's Origin must be in allowedOrigins (lower case); requests
+     * without one come from non-browser clients and are let through
+     * @throws IOException if the request is not a valid WebSocket upgrade
+     */
+    public static void acceptHandshake(InputStream in, OutputStream out, Set<String> allowedOrigins) throws IOException {
+        String[] lines = readHeader(in);
+        Map<String, String> headers = parseHeaders(lines);
+        String key = headers.get("sec-websocket-key");
+        
+        if (!lines[0].startsWith("GET ") ||
+            !"websocket".equalsIgnoreCase(headers.get("upgrade")) ||
+            !headers.getOrDefault("connection", "").toLowerCase(Locale.ROOT).contains("upgrade") ||
+            key == null) {
+            writeHttp(out, "HTTP/1.1 400 Bad Request\r\nConnection: close\r\n\r\n");
+            throw new IOException("Not a WebSocket upgrade: " + lines[0]);
+        }
+        if (!"13".equals(headers.get("sec-websocket-version"))) {
+            writeHttp(out, "HTTP/1.1 426 Upgrade Required\r\nSec-WebSocket-Version: 13\r\nConnection: close\r\n\r\n");
+            throw new IOException("Unsupported WebSocket version");
+        }
+        String origin = headers.get("origin");
+        if (origin != null && !allowedOrigins.contains(origin.toLowerCase(Locale.ROOT))) {
+            writeHttp(out, "HTTP/1.1 403 Forbidden\r\nConnection: close\r\n\r\n");
+            throw new IOException("Origin not allowed: " + origin);
+        }
+        
+        writeHttp(out, "HTTP/1.1 101 Switching Protocols\r\n" +
+            "Upgrade: websocket\r\n" +
+            "Connection: Upgrade\r\n" +
+            "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n");
+    }
+    
+    /**
+     * Sends upgrade request as a client and checks the server's answer
+     */
+    public static void requestHandshake(InputStream in, OutputStream out, String host, String path) throws IOException {
+        byte[] nonce = new byte[16];
+        random.nextBytes(nonce);
+        String key = Base64.getEncoder().encodeToString(nonce);
+        
+        writeHttp(out, "GET " + path + " HTTP/1.1\r\n" +
+            "Host: " + host + "\r\n" +
+            "Upgrade: websocket\r\n" +
+            "Connection: Upgrade\r\n" +
+            "Sec-WebSocket-Key: " + key + "\r\n" +
+            "Sec-WebSocket-Version: 13\r\n\r\n");
+        
+        String[] lines = readHeader(in);
+        Map<String, String> headers = parseHeaders(lines);
+        if (!lines[0].startsWith("HTTP/1.1 101") || !acceptKey(key).equals(headers.get("sec-websocket-accept"))) {
+            throw new IOException("WebSocket upgrade refused: " + lines[0]);
+        }
+    }
+    
+    /**
+     * Computes Sec-WebSocket-Accept for a client key
+     */
+    public static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key.trim() + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 unavailable", e);
+        }
+    }
+    
+    /**
+     * Reads HTTP header block up to the empty line
+     */
+    private static String[] readHeader(InputStream in) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream(512);
+        int matched = 0;
+        while (matched < 4) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Connection closed during WebSocket handshake");
+            }
+            if (header.size() >= MAX_HEADER_BYTES) {
+                throw new IOException("WebSocket handshake header too large");
+            }
+            header.write(b);
+            matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+        return header.toString(StandardCharsets.ISO_8859_1).split("\r\n");
+    }
+    
+    /**
+     * Parses header lines into lower-case names
+     */
+    private static Map<String, String> parseHeaders(String[] lines) {
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT), lines[i].substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+    
+    private static void writeHttp(OutputStream out, String response) throws IOException {
+        out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+    
+    /**
+     * Reads one frame and unmasks its payload
+     * @param expectMasked true on the server side, where client frames must be masked
+     * @return frame, or null at end of stream
+     */
+    public static Frame readFrame(DataInputStream in, boolean expectMasked, int maxPayload) throws IOException {
+        int first = in.read();
+        if (first == -1) {
+            return null;
+        }
+        int second = in.readUnsignedByte();
+        
+        if ((first & 0x70) != 0) {
+            throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Reserved bits set");
+        }
+        boolean masked = (second & 0x80) != 0;
+        if (masked != expectMasked) {
+            throw new ProtocolException(CLOSE_PROTOCOL_ERROR, masked ? "Unexpected mask" : "Unmasked client frame");
+        }
+        
+        long length = second & 0x7F;
+        if (length == 126) {
+            length = in.readUnsignedShort();
+        } else if (length == 127) {
+            length = in.readLong();
+        }
+        int opcode = first & 0x0F;
+        if (opcode >= OP_CLOSE && ((first & 0x80) == 0 || length > 125)) {
+            throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Invalid control frame");
+        }
+        if (length < 0 || length > maxPayload) {
+            throw new ProtocolException(CLOSE_TOO_BIG, "Frame exceeds " + maxPayload + " bytes");
+        }
+        
+        byte[] mask = null;
+        if (masked) {
+            mask = new byte[4];
+            in.readFully(mask);
+        }
+        byte[] payload = new byte[(int) length];
+        in.readFully(payload);
+        if (mask != null) {
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] ^= mask[i & 3];
+            }
+        }
+        return new Frame((first & 0x80) != 0, opcode, payload);
+    }
+    
+    /**
+     * Writes one unfragmented frame in a single write
+     * @param masked true on the client side, where frames must be masked
+     */
+    public static void writeFrame(OutputStream out, int opcode, byte[] payload, int offset, int length, boolean masked) throws IOException {
+        int headerBytes = 2 + (length < 126 ? 0 : length <= 0xFFFF ? 2 : 8) + (masked ? 4 : 0);
+        byte[] frame = new byte[headerBytes + length];
+        frame[0] = (byte) (0x80 | opcode);
+        
+        int position = 2;
+        if (length < 126) {
+            frame[1] = (byte) length;
+        } else if (length <= 0xFFFF) {
+            frame[1] = 126;
+            frame[position++] = (byte) (length >>> 8);
+            frame[position++] = (byte) length;
+        } else {
+            frame[1] = 127;
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                frame[position++] = (byte) ((long) length >>> shift);
+            }
+        }
+        
+        if (masked) {
+            frame[1] |= (byte) 0x80;
+            byte[] mask = new byte[4];
+            random.nextBytes(mask);
+            System.arraycopy(mask, 0, frame, position, 4);
+            position += 4;
+            for (int i = 0; i < length; i++) {
+                frame[position + i] = (byte) (payload[offset + i] ^ mask[i & 3]);
+            }
+        } else {
+            System.arraycopy(payload, offset, frame, position, length);
+        }
+        
+        out.write(frame);
+        out.flush();
+    }
+    
+    /**
+     * Builds close frame payload: status code and reason
+     */
+    public static byte[] closePayload(int status, String reason) {
+        byte[] text = reason.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[2 + Math.min(text.length, 123)];
+        payload[0] = (byte) (status >>> 8);
+        payload[1] = (byte) status;
+        System.arraycopy(text, 0, payload, 2, payload.length - 2);
+        return payload;
+    }
+    
+    /**
+     * Decoded frame
+     */
+    public static class Frame {
+        public final boolean fin;
+        public final int opcode;
+        public final byte[] payload;
+        
+        public Frame(boolean fin, int opcode, byte[] payload) {
+            this.fin = fin;
+            this.opcode = opcode;
+            this.payload = payload;
+        }
+    }
+    
+    /**
+     * Peer violated the protocol; connection is closed with the given status
+     */
+    public static class ProtocolException extends IOException {
+        private static final long serialVersionUID = 1L;
+        
+        public final int status;
+        
+        public ProtocolException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
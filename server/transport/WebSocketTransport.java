@@ -0,0 +1,427 @@
+package transport;
+
+import config.ServerConfig;
+import util.ByteScan;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Transport for browser clients over WebSocket (RFC 6455)
+ * Each protocol frame travels as one message: ciphertext as a binary message
+ * holding the raw bytes (BinaryOutput/BinaryInput, no Base64), every line
+ * (login JSON, DH public key, passthrough) as text
+ */
+public class WebSocketTransport implements Transport {
+    private final int requestedPort;
+    private final Set<String> allowedOrigins;
+    private volatile ServerSocket listener;
+    
+    public WebSocketTransport(int port) {
+        this(port, ServerConfig.WEBSOCKET_ALLOWED_ORIGINS);
+    }
+    
+    public WebSocketTransport(int port, Set<String> allowedOrigins) {
+        this.requestedPort = port;
+        this.allowedOrigins = allowedOrigins;
+    }
+    
+    @Override
+    public void start(Consumer<Channel> acceptor) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(requestedPort);
+        listener = serverSocket;
+        
+        Thread acceptThread = new Thread(() -> acceptLoop(serverSocket, acceptor), "ws-accept-" + getPort());
+        acceptThread.start();
+    }
+    
+    /**
+     * Accepts sockets until listener is closed
+     * Upgrade handshake runs later on the client's own thread
+     */
+    private void acceptLoop(ServerSocket serverSocket, Consumer<Channel> acceptor) {
+        while (!serverSocket.isClosed()) {
+            try {
+                acceptor.accept(new WebSocketChannel(serverSocket.accept(), null, allowedOrigins));
+            } catch (Exception e) {
+                if (serverSocket.isClosed()) {
+                    break;
+                }
+                System.err.println("Error accepting WebSocket connection: " + e.getMessage());
+            }
+        }
+    }
+    
+    @Override
+    public void stop() {
+        try {
+            if (listener != null) {
+                listener.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing WebSocket listener: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Gets bound port, or requested port before start
+     */
+    public int getPort() {
+        ServerSocket serverSocket = listener;
+        return serverSocket != null ? serverSocket.getLocalPort() : requestedPort;
+    }
+    
+    @Override
+    public String describe() {
+        return "ws://0.0.0.0:" + getPort() + "/";
+    }
+    
+    /**
+     * Opens client side of a WebSocket channel (for tools and tests)
+     */
+    public static Channel connect(String host, int port) throws IOException {
+        WebSocketChannel channel = new WebSocketChannel(new Socket(host, port), host, Set.of());
+        channel.open();
+        return channel;
+    }
+    
+    /**
+     * Channel that maps protocol lines onto WebSocket messages
+     */
+    public static class WebSocketChannel implements Channel {
+        private final Socket socket;
+        private final String clientHost; // Set on the client side, which masks its frames
+        private final Set<String> allowedOrigins;
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private DataInputStream rawIn;
+        private OutputStream rawOut;
+        private MessageInputStream input;
+        private MessageOutputStream output;
+        private volatile boolean closeSent = false;
+        
+        WebSocketChannel(Socket socket, String clientHost, Set<String> allowedOrigins) {
+            this.socket = socket;
+            this.clientHost = clientHost;
+            this.allowedOrigins = allowedOrigins;
+        }
+        
+        /**
+         * Runs the opening handshake on first use of the streams
+         */
+        private synchronized void open() throws IOException {
+            if (input != null) {
+                return;
+            }
+            rawIn = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            rawOut = socket.getOutputStream();
+            if (clientHost == null) {
+                WebSocketCodec.acceptHandshake(rawIn, rawOut, allowedOrigins);
+            } else {
+                WebSocketCodec.requestHandshake(rawIn, rawOut, clientHost, "/");
+            }
+            input = new MessageInputStream();
+            output = new MessageOutputStream();
+        }
+        
+        @Override
+        public InputStream getInputStream() throws IOException {
+            open();
+            return input;
+        }
+        
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            open();
+            return output;
+        }
+        
+        @Override
+        public String getPeerAddress() {
+            return socket.getInetAddress().getHostAddress();
+        }
+        
+        @Override
+        public void setReadTimeout(int timeoutMs) throws IOException {
+            socket.setSoTimeout(timeoutMs);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            sendClose(WebSocketCodec.CLOSE_NORMAL, "");
+            socket.close();
+        }
+        
+        @Override
+        public boolean isClosed() {
+            return socket.isClosed();
+        }
+        
+        /**
+         * Writes frame; the reader thread's pongs and closes share the socket with the writer
+         */
+        private void writeFrame(int opcode, byte[] payload, int offset, int length) throws IOException {
+            writeLock.lock();
+            try {
+                WebSocketCodec.writeFrame(rawOut, opcode, payload, offset, length, clientHost != null);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        
+        /**
+         * Sends close frame once, best effort
+         * Skipped if a write is in progress: that writer may be blocked on a
+         * stalled peer, and closing the socket must not wait for it
+         */
+        private void sendClose(int status, String reason) {
+            if (closeSent || rawOut == null || socket.isClosed()) {
+                return;
+            }
+            closeSent = true;
+            if (!writeLock.tryLock()) {
+                return;
+            }
+            try {
+                byte[] payload = WebSocketCodec.closePayload(status, reason);
+                WebSocketCodec.writeFrame(rawOut, WebSocketCodec.OP_CLOSE, payload, 0, payload.length, clientHost != null);
+            } catch (IOException e) {
+                // Peer already gone
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        
+        /**
+         * Reads next complete data message; text arrives as a newline-terminated line
+         * @return message, or null once the peer closed
+         */
+        private WebSocketCodec.Frame readMessage() throws IOException {
+            int opcode = -1;
+            byte[] data = null;
+            try {
+                while (true) {
+                    WebSocketCodec.Frame frame = WebSocketCodec.readFrame(rawIn, clientHost == null, ServerConfig.MAX_LINE_BYTES);
+                    if (frame == null) {
+                        return null;
+                    }
+                    
+                    switch (frame.opcode) {
+                        case WebSocketCodec.OP_PING:
+                            writeFrame(WebSocketCodec.OP_PONG, frame.payload, 0, frame.payload.length);
+                            continue;
+                        case WebSocketCodec.OP_PONG:
+                            continue;
+                        case WebSocketCodec.OP_CLOSE:
+                            sendClose(WebSocketCodec.CLOSE_NORMAL, "");
+                            return null;
+                        case WebSocketCodec.OP_CONTINUATION:
+                            if (data == null) {
+                                throw new WebSocketCodec.ProtocolException(WebSocketCodec.CLOSE_PROTOCOL_ERROR, "Unexpected continuation");
+                            }
+                            if (data.length + frame.payload.length > ServerConfig.MAX_LINE_BYTES) {
+                                throw new WebSocketCodec.ProtocolException(WebSocketCodec.CLOSE_TOO_BIG, "Message too large");
+                            }
+                            int previous = data.length;
+                            data = Arrays.copyOf(data, previous + frame.payload.length);
+                            System.arraycopy(frame.payload, 0, data, previous, frame.payload.length);
+                            break;
+                        case WebSocketCodec.OP_TEXT:
+                        case WebSocketCodec.OP_BINARY:
+                            if (data != null) {
+                                throw new WebSocketCodec.ProtocolException(WebSocketCodec.CLOSE_PROTOCOL_ERROR, "Interleaved message");
+                            }
+                            opcode = frame.opcode;
+                            data = frame.payload;
+                            break;
+                        default:
+                            throw new WebSocketCodec.ProtocolException(WebSocketCodec.CLOSE_PROTOCOL_ERROR, "Unknown opcode " + frame.opcode);
+                    }
+                    
+                    if (frame.fin) {
+                        return new WebSocketCodec.Frame(true, opcode, opcode == WebSocketCodec.OP_BINARY ? data : textLine(data));
+                    }
+                }
+            } catch (WebSocketCodec.ProtocolException e) {
+                sendClose(e.status, e.getMessage());
+                throw e;
+            }
+        }
+        
+        /**
+         * Turns text message into a newline-terminated line
+         */
+        private static byte[] textLine(byte[] data) throws IOException {
+            if (ByteScan.indexOf(data, 0, data.length, (byte) '\n') >= 0) {
+                throw new WebSocketCodec.ProtocolException(WebSocketCodec.CLOSE_PROTOCOL_ERROR, "Line break in text message");
+            }
+            byte[] line = Arrays.copyOf(data, data.length + 1);
+            line[data.length] = '\n';
+            return line;
+        }
+        
+        /**
+         * Stream of received messages: text as newline-terminated lines,
+         * binary taken whole by readBinary()
+         */
+        private class MessageInputStream extends InputStream implements BinaryInput {
+            private byte[] line;
+            private int position;
+            private byte[] binary; // Binary message not yet taken
+            
+            @Override
+            public byte[] readBinary() throws IOException {
+                if (line != null && position < line.length) {
+                    return null; // Text line partly read
+                }
+                if (binary == null && !next()) {
+                    return null;
+                }
+                byte[] payload = binary;
+                binary = null;
+                return payload;
+            }
+            
+            @Override
+            public int read() throws IOException {
+                if (!fill()) {
+                    return -1;
+                }
+                return line[position++] & 0xFF;
+            }
+            
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                if (!fill()) {
+                    return -1;
+                }
+                int count = Math.min(length, line.length - position);
+                System.arraycopy(line, position, buffer, offset, count);
+                position += count;
+                return count;
+            }
+            
+            @Override
+            public int available() {
+                return line == null ? 0 : line.length - position;
+            }
+            
+            /**
+             * Makes a line readable; a binary message read as a stream (e.g. by
+             * a plain line client) is Base64-encoded to the line protocol form
+             */
+            private boolean fill() throws IOException {
+                while (line == null || position == line.length) {
+                    if (binary != null) {
+                        line = new byte[(binary.length + 2) / 3 * 4 + 1];
+                        line[Base64.getEncoder().encode(binary, line)] = '\n';
+                        position = 0;
+                        binary = null;
+                    } else if (!next()) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            
+            /**
+             * Reads next message into line or binary
+             * @return false once the peer closed
+             */
+            private boolean next() throws IOException {
+                WebSocketCodec.Frame message = readMessage();
+                if (message == null) {
+                    return false;
+                }
+                if (message.opcode == WebSocketCodec.OP_BINARY) {
+                    binary = message.payload;
+                } else {
+                    line = message.payload;
+                    position = 0;
+                }
+                return true;
+            }
+            
+            @Override
+            public void close() throws IOException {
+                WebSocketChannel.this.close();
+            }
+        }
+        
+        /**
+         * Collects written bytes and sends each completed line as a text
+         * message; ciphertext goes out whole through writeBinary()
+         */
+        private class MessageOutputStream extends OutputStream implements BinaryOutput {
+            private byte[] pending = new byte[1024];
+            private int length;
+            
+            @Override
+            public void write(int b) throws IOException {
+                if (b == '\n') {
+                    flushLine();
+                } else {
+                    append((byte) b);
+                }
+            }
+            
+            @Override
+            public synchronized void write(byte[] buffer, int offset, int count) throws IOException {
+                int start = offset;
+                int end = offset + count;
+                for (int i = offset; i < end; i++) {
+                    if (buffer[i] == '\n') {
+                        appendAll(buffer, start, i - start);
+                        flushLine();
+                        start = i + 1;
+                    }
+                }
+                appendAll(buffer, start, end - start);
+            }
+            
+            private synchronized void append(byte b) {
+                ensureCapacity(length + 1);
+                pending[length++] = b;
+            }
+            
+            private void appendAll(byte[] buffer, int offset, int count) {
+                ensureCapacity(length + count);
+                System.arraycopy(buffer, offset, pending, length, count);
+                length += count;
+            }
+            
+            private void ensureCapacity(int needed) {
+                if (needed > pending.length) {
+                    pending = Arrays.copyOf(pending, Math.max(needed, pending.length * 2));
+                }
+            }
+            
+            private synchronized void flushLine() throws IOException {
+                int end = length > 0 && pending[length - 1] == '\r' ? length - 1 : length;
+                length = 0;
+                writeFrame(WebSocketCodec.OP_TEXT, pending, 0, end);
+            }
+            
+            @Override
+            public void writeBinary(byte[] data, int offset, int count) throws IOException {
+                writeFrame(WebSocketCodec.OP_BINARY, data, offset, count);
+            }
+            
+            @Override
+            public void close() throws IOException {
+                WebSocketChannel.this.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package util;
+
+import config.ServerConfig;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared pool of fixed-size byte buffers
+ * Connections borrow buffers only while a line is in flight; borrowed bytes,
+ * grown buffers included, never exceed BUFFER_POOL_BUDGET_BYTES
+ */
+public class BufferPool {
+    private static final int MAX_POOLED = (int) (ServerConfig.BUFFER_POOL_BUDGET_BYTES / ServerConfig.BUFFER_SIZE);
+    
+    private static final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger freeCount = new AtomicInteger();
+    private static final AtomicLong outstandingBytes = new AtomicLong();
+    private static final AtomicLong refusals = new AtomicLong();
+    
+    /**
+     * Borrows a buffer of BUFFER_SIZE bytes
+     * @return buffer, or null if the budget is used up
+     */
+    public static byte[] acquire() {
+        if (!reserve(ServerConfig.BUFFER_SIZE)) {
+            return null;
+        }
+        
+        byte[] buffer = free.poll();
+        if (buffer != null) {
+            freeCount.decrementAndGet();
+        } else {
+            buffer = new byte[ServerConfig.BUFFER_SIZE];
+        }
+        return buffer;
+    }
+    
+    /**
+     * Replaces a borrowed buffer with a larger one holding its first used bytes
+     * The extra bytes count against the budget until the larger one is released
+     * @return larger buffer, or null if the budget is used up (old one stays borrowed)
+     */
+    public static byte[] grow(byte[] buffer, int used, int size) {
+        if (!reserve(size - buffer.length)) {
+            return null;
+        }
+        
+        byte[] larger = new byte[size];
+        System.arraycopy(buffer, 0, larger, 0, used);
+        recycle(buffer);
+        return larger;
+    }
+    
+    /**
+     * Returns a borrowed buffer
+     * Buffers beyond the memory budget are left to GC
+     */
+    public static void release(byte[] buffer) {
+        if (buffer == null) {
+            return;
+        }
+        outstandingBytes.addAndGet(-buffer.length);
+        recycle(buffer);
+    }
+    
+    /**
+     * Takes bytes out of the budget unless that would exceed it
+     */
+    private static boolean reserve(long bytes) {
+        while (true) {
+            long outstanding = outstandingBytes.get();
+            if (outstanding + bytes > ServerConfig.BUFFER_POOL_BUDGET_BYTES) {
+                refusals.incrementAndGet();
+                return false;
+            }
+            if (outstandingBytes.compareAndSet(outstanding, outstanding + bytes)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Keeps standard-size buffer for reuse; grown ones are left to GC
+     */
+    private static void recycle(byte[] buffer) {
+        if (buffer.length != ServerConfig.BUFFER_SIZE) {
+            return;
+        }
+        if (freeCount.incrementAndGet() <= MAX_POOLED) {
+            free.offer(buffer);
+        } else {
+            freeCount.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Gets bytes currently borrowed by connections
+     */
+    public static long getOutstandingBytes() {
+        return outstandingBytes.get();
+    }
+    
+    /**
+     * Gets bytes idle in the pool
+     */
+    public static long getPooledBytes() {
+        return (long) freeCount.get() * ServerConfig.BUFFER_SIZE;
+    }
+    
+    /**
+     * Gets number of borrows and grows refused by the budget
+     */
+    public static long getRefusedCount() {
+        return refusals.get();
+    }
+}
@@ -0,0 +1,135 @@
+package util;
+
+import config.ServerConfig;
+
+/**
+ * Byte scans on the per-frame path: line breaks and character-class validation
+ * Scalar by default; with -Dsynq.simd=true the Vector API kernels are chosen
+ * at startup if the optional SIMD build (simd/, see README) is on the class path
+ * and jdk.incubator.vector is present (--add-modules jdk.incubator.vector),
+ * otherwise the scalar ones stay in place
+ */
+public class ByteScan {
+    public static final Kernel SCALAR = new ScalarKernel();
+    private static final Kernel kernel = select();
+    
+    /**
+     * Allowed characters of an identifier
+     */
+    public enum CharClass {
+        USERNAME("_"),     // [a-zA-Z0-9_]
+        MESSAGE_ID("_-"),  // [a-zA-Z0-9_-]
+        HEX(null);         // [a-fA-F0-9]
+        
+        public final String extra;
+        private final boolean[] allowed = new boolean[128];
+        
+        CharClass(String extra) {
+            this.extra = extra;
+            for (char c = '0'; c <= '9'; c++) {
+                allowed[c] = true;
+            }
+            char lastLetter = extra == null ? 'f' : 'z';
+            for (char c = 'a'; c <= lastLetter; c++) {
+                allowed[c] = true;
+                allowed[Character.toUpperCase(c)] = true;
+            }
+            if (extra != null) {
+                for (char c : extra.toCharArray()) {
+                    allowed[c] = true;
+                }
+            }
+        }
+        
+        public boolean allows(int c) {
+            return c >= 0 && c < 128 && allowed[c];
+        }
+    }
+    
+    /**
+     * One implementation of the scans
+     */
+    public interface Kernel {
+        /**
+         * Finds first occurrence of value in data[from, to)
+         * @return index, or -1 if absent
+         */
+        int indexOf(byte[] data, int from, int to, byte value);
+        
+        /**
+         * Checks if every character of text is in the class
+         */
+        boolean allInClass(String text, CharClass charClass);
+        
+        String describe();
+    }
+    
+    private static Kernel select() {
+        if (ServerConfig.SIMD_SCAN_ENABLED) {
+            Kernel vector = loadVector();
+            if (vector != null) {
+                return vector;
+            }
+            System.err.println("✗ SIMD scanning unavailable (needs the SIMD build and --add-modules jdk.incubator.vector), using scalar");
+        }
+        return SCALAR;
+    }
+    
+    /**
+     * Loads the Vector API kernels
+     * @return kernels, or null if they were not built or the incubator module is not present
+     */
+    public static Kernel loadVector() {
+        try {
+            return (Kernel) Class.forName("util.VectorScan").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Gets kernels chosen at startup
+     */
+    public static Kernel getKernel() {
+        return kernel;
+    }
+    
+    public static int indexOf(byte[] data, int from, int to, byte value) {
+        return kernel.indexOf(data, from, to, value);
+    }
+    
+    public static boolean allInClass(String text, CharClass charClass) {
+        return kernel.allInClass(text, charClass);
+    }
+    
+    /**
+     * Byte-at-a-time kernels
+     */
+    private static class ScalarKernel implements Kernel {
+        
+        @Override
+        public int indexOf(byte[] data, int from, int to, byte value) {
+            for (int i = from; i < to; i++) {
+                if (data[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        
+        @Override
+        public boolean allInClass(String text, CharClass charClass) {
+            for (int i = 0; i < text.length(); i++) {
+                if (!charClass.allows(text.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public String describe() {
+            return "scalar";
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Drops standard output written by chosen threads, e.g. the connection
+ * threads of the warm-up instance; output of every other thread passes through
+ */
+public class ConsoleMute {
+    private static final ThreadLocal<Boolean> muted = ThreadLocal.withInitial(() -> false);
+    private static boolean installed;
+    
+    /**
+     * Wraps System.out with the per-thread filter (once)
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        System.setOut(new PrintStream(new FilterOutputStream(System.out) {
+            @Override
+            public void write(int b) throws IOException {
+                if (!muted.get()) {
+                    out.write(b);
+                }
+            }
+            
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (!muted.get()) {
+                    out.write(b, off, len);
+                }
+            }
+        }, true));
+        installed = true;
+    }
+    
+    /**
+     * Mutes or unmutes standard output of the calling thread
+     */
+    public static void setMuted(boolean mute) {
+        muted.set(mute);
+    }
+}
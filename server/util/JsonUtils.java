@@ -31,6 +31,13 @@ public class JsonUtils {
         return gson.toJson(obj);
     }
     
+    /**
+     * Parses trusted JSON (not from clients) into object, without size limit
+     */
+    public static <T> T fromJson(String json, Class<T> type) throws JsonSyntaxException {
+        return gson.fromJson(json, type);
+    }
+    
     /**
      * Checks if field exists and is not null
      */
@@ -0,0 +1,451 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of fixed-size memory-mapped segment files
+ * Appends are made durable by group commit: one force() covers every
+ * append made since the previous one; appenders either wait for it or
+ * are called back from the commit thread once it is done
+ *
+ * Record: length (int), CRC32 of payload (int), payload; length 0 ends a segment
+ */
+public class SegmentedLog {
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    
+    private final Path directory;
+    private final int segmentBytes;
+    private final long commitDelayMs;
+    
+    // Segment id -> segment, oldest first
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+    
+    // Group commit state
+    private final Object commitLock = new Object();
+    private volatile long appendedSeq = 0;
+    private long committedSeq = 0;
+    private final AtomicLong commitCount = new AtomicLong();
+    private final ConcurrentLinkedQueue<CommitCallback> callbacks = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = false;
+    private Thread committer;
+    
+    public SegmentedLog(Path directory, int segmentBytes, long commitDelayMs) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.commitDelayMs = commitDelayMs;
+    }
+    
+    /**
+     * Maps existing segments, calling visitor for every intact record in order
+     * until it rejects one, then starts the commit thread
+     */
+    public synchronized void open(RecordVisitor visitor) throws IOException {
+        Files.createDirectories(directory);
+        
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        ids.sort(null);
+        
+        for (long id : ids) {
+            Segment segment = Segment.map(segmentPath(id), id, segmentBytes);
+            segment.lastAppendMillis = Files.getLastModifiedTime(segment.path).toMillis();
+            segments.put(id, segment);
+            scan(segment, visitor);
+        }
+        active = segments.isEmpty() ? roll(0) : segments.lastEntry().getValue();
+        
+        running = true;
+        committer = new Thread(this::commitLoop, "log-commit-" + directory.getFileName());
+        committer.setDaemon(true);
+        committer.start();
+    }
+    
+    /**
+     * Reads intact records of segment and positions its write offset after them
+     */
+    private void scan(Segment segment, RecordVisitor visitor) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int offset = 0;
+        while (offset + HEADER_BYTES <= segmentBytes) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > segmentBytes) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.position(offset + HEADER_BYTES);
+            buffer.get(payload);
+            if (crc(payload) != buffer.getInt(offset + 4)) {
+                break; // Torn write
+            }
+            
+            if (!visitor.visit(new Location(segment.id, offset), payload)) {
+                break; // Malformed content; later appends overwrite it
+            }
+            segment.live.incrementAndGet();
+            offset += HEADER_BYTES + length;
+        }
+        segment.writeOffset = offset;
+    }
+    
+    /**
+     * Appends record and waits until it is durable
+     */
+    public Location append(byte[] payload) throws IOException {
+        Location location = write(payload, null);
+        awaitCommit(location.seq);
+        return location;
+    }
+    
+    /**
+     * Appends record without waiting for the commit; readable at once
+     * @param onCommit run on the commit thread once the record is durable, may be null
+     */
+    public Location append(byte[] payload, Runnable onCommit) throws IOException {
+        Location location = write(payload, onCommit);
+        synchronized (commitLock) {
+            commitLock.notifyAll();
+        }
+        return location;
+    }
+    
+    /**
+     * Writes record into the active segment, rolling when full
+     */
+    private Location write(byte[] payload, Runnable onCommit) throws IOException {
+        int size = HEADER_BYTES + payload.length;
+        if (size > segmentBytes) {
+            throw new IOException("Record larger than segment");
+        }
+        
+        Location location;
+        long seq;
+        synchronized (this) {
+            if (!running) {
+                throw new IOException("Log closed");
+            }
+            if (active.writeOffset + size > segmentBytes) {
+                active.buffer.force();
+                active = roll(active.id + 1);
+            }
+            
+            // Payload and CRC before length, so a torn record reads as end of log
+            ByteBuffer buffer = active.buffer.duplicate();
+            int offset = active.writeOffset;
+            buffer.putInt(offset + 4, crc(payload));
+            buffer.position(offset + HEADER_BYTES);
+            buffer.put(payload);
+            buffer.putInt(offset, payload.length);
+            
+            active.writeOffset += size;
+            active.live.incrementAndGet();
+            active.lastAppendMillis = System.currentTimeMillis();
+            seq = ++appendedSeq;
+            location = new Location(active.id, offset, seq);
+            if (onCommit != null) {
+                callbacks.add(new CommitCallback(seq, onCommit)); // In seq order
+            }
+        }
+        return location;
+    }
+    
+    /**
+     * Wakes committer and blocks until sequence is forced to disk
+     */
+    private void awaitCommit(long seq) throws IOException {
+        synchronized (commitLock) {
+            commitLock.notifyAll();
+            while (committedSeq < seq) {
+                if (!running) {
+                    throw new IOException("Log closed before commit");
+                }
+                try {
+                    commitLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for commit");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Forces pending appends, batching all that arrive within the commit delay
+     */
+    private void commitLoop() {
+        while (running) {
+            try {
+                synchronized (commitLock) {
+                    while (running && appendedSeq == committedSeq) {
+                        commitLock.wait();
+                    }
+                }
+                if (commitDelayMs > 0) {
+                    Thread.sleep(commitDelayMs);
+                }
+                
+                // Earlier segments were forced when rolled
+                long target;
+                Segment segment;
+                synchronized (this) {
+                    target = appendedSeq;
+                    segment = active;
+                }
+                segment.buffer.force();
+                commitCount.incrementAndGet();
+                
+                synchronized (commitLock) {
+                    committedSeq = target;
+                    commitLock.notifyAll();
+                }
+                runCallbacks(target);
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                System.err.println("Log commit failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Runs callbacks of appends up to seq, in append order
+     */
+    private void runCallbacks(long seq) {
+        CommitCallback callback;
+        while ((callback = callbacks.peek()) != null && callback.seq <= seq) {
+            callbacks.poll();
+            try {
+                callback.action.run();
+            } catch (Exception e) {
+                System.err.println("Log commit callback failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Reads record payload, checking length and CRC like the scan on open
+     * @return payload, or null if its segment was compacted away or the record is damaged
+     */
+    public byte[] read(Location location) {
+        Segment segment;
+        synchronized (this) {
+            segment = segments.get(location.segment);
+        }
+        if (segment == null || location.offset < 0 || location.offset + HEADER_BYTES > segmentBytes) {
+            return null;
+        }
+        
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int length = buffer.getInt(location.offset);
+        if (length <= 0 || location.offset + HEADER_BYTES + length > segmentBytes) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.position(location.offset + HEADER_BYTES);
+        buffer.get(payload);
+        return crc(payload) == buffer.getInt(location.offset + 4) ? payload : null;
+    }
+    
+    /**
+     * Marks record as no longer needed
+     */
+    public void release(Location location) {
+        Segment segment;
+        synchronized (this) {
+            segment = segments.get(location.segment);
+        }
+        if (segment != null) {
+            segment.live.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Deletes oldest segments while fully released or older than retention
+     * Only the head is removed so later segments' records stay in order
+     * @return number of segments deleted
+     */
+    public synchronized int compact(long retentionMs) {
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        int deleted = 0;
+        
+        while (segments.size() > 1) {
+            Map.Entry<Long, Segment> head = segments.firstEntry();
+            Segment segment = head.getValue();
+            if (segment.live.get() > 0 && segment.lastAppendMillis > cutoff) {
+                break;
+            }
+            segments.remove(head.getKey());
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+                deleted++;
+            } catch (IOException e) {
+                System.err.println("Failed to delete log segment " + segment.path + ": " + e.getMessage());
+            }
+        }
+        return deleted;
+    }
+    
+    /**
+     * Stops committer after forcing outstanding appends
+     */
+    public void close() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            if (active != null) {
+                active.buffer.force();
+            }
+            synchronized (commitLock) {
+                committedSeq = appendedSeq;
+                running = false;
+                commitLock.notifyAll();
+            }
+            runCallbacks(appendedSeq);
+        }
+        committer.interrupt();
+        
+        synchronized (this) {
+            for (Segment segment : segments.values()) {
+                try {
+                    segment.channel.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing log segment: " + e.getMessage());
+                }
+            }
+            segments.clear();
+        }
+    }
+    
+    /**
+     * Creates and maps a new empty segment
+     */
+    private Segment roll(long id) throws IOException {
+        Segment segment = Segment.map(segmentPath(id), id, segmentBytes);
+        segment.channel.force(true);
+        segment.lastAppendMillis = System.currentTimeMillis();
+        segments.put(id, segment);
+        return segment;
+    }
+    
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+    
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+    
+    public int getSegmentCount() {
+        synchronized (this) {
+            return segments.size();
+        }
+    }
+    
+    public long getCommitCount() {
+        return commitCount.get();
+    }
+    
+    public long getAppendCount() {
+        return appendedSeq;
+    }
+    
+    /**
+     * Position of a record
+     */
+    public static class Location implements Comparable<Location> {
+        public final long segment;
+        public final int offset;
+        final long seq; // Append sequence, 0 for records found on open
+        
+        public Location(long segment, int offset) {
+            this(segment, offset, 0);
+        }
+        
+        Location(long segment, int offset, long seq) {
+            this.segment = segment;
+            this.offset = offset;
+            this.seq = seq;
+        }
+        
+        @Override
+        public int compareTo(Location other) {
+            int bySegment = Long.compare(segment, other.segment);
+            return bySegment != 0 ? bySegment : Integer.compare(offset, other.offset);
+        }
+    }
+    
+    /**
+     * Receives records found when opening the log
+     */
+    public interface RecordVisitor {
+        /**
+         * @return false to treat this record as the end of its segment
+         */
+        boolean visit(Location location, byte[] payload);
+    }
+    
+    /**
+     * Action waiting for an append to become durable
+     */
+    private static class CommitCallback {
+        final long seq;
+        final Runnable action;
+        
+        CommitCallback(long seq, Runnable action) {
+            this.seq = seq;
+            this.action = action;
+        }
+    }
+    
+    /**
+     * One mapped segment file
+     */
+    private static class Segment {
+        final long id;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final AtomicInteger live = new AtomicInteger();
+        int writeOffset;
+        volatile long lastAppendMillis;
+        
+        private Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+        
+        static Segment map(Path path, long id, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket
+ * Keeps only the time at which the bucket would be full again and
+ * advances it with a single CAS per acquire (GCRA form)
+ */
+public class TokenBucket {
+    private final long nanosPerToken;
+    private final long burstNanos;
+    
+    // Theoretical time the bucket is full again; before now means full
+    private final AtomicLong fullAt;
+    
+    public TokenBucket(double tokensPerSecond, long burst) {
+        this.nanosPerToken = Math.max(1, (long) (1_000_000_000L / tokensPerSecond));
+        this.burstNanos = burst * nanosPerToken;
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+    
+    /**
+     * Takes tokens if enough are available
+     * @return false (taking nothing) if bucket holds fewer than cost tokens
+     */
+    public boolean tryAcquire(long cost) {
+        long now = System.nanoTime();
+        while (true) {
+            long current = fullAt.get();
+            long base = current - now > 0 ? current : now;
+            long next = base + cost * nanosPerToken;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Gives back tokens taken for something that turned out to be exempt
+     * Never fills the bucket beyond full
+     */
+    public void refund(long cost) {
+        long now = System.nanoTime();
+        fullAt.getAndUpdate(current -> {
+            long next = current - cost * nanosPerToken;
+            return next - now < 0 ? now : next;
+        });
+    }
+}
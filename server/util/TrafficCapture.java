@@ -0,0 +1,205 @@
+package util;
+
+import config.ServerConfig;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records protocol events to a compact append-only binary file
+ * Only shapes are kept: pseudonymous user ids, timing and sizes, never text
+ *
+ * File: "SYNQCAP1", start epoch ms (long), then records of
+ * kind (byte), delta micros, user id, peer id, size (all unsigned varints)
+ */
+public class TrafficCapture {
+    public static final byte LOGIN = 1;
+    public static final byte BIND_KEYLESS = 2;
+    public static final byte BIND_KEYED = 3;
+    public static final byte MESSAGE = 4;
+    public static final byte BATCH = 5;
+    public static final byte PRESENCE = 6;
+    public static final byte DISCONNECT = 7;
+    
+    private static final byte[] MAGIC = {'S', 'Y', 'N', 'Q', 'C', 'A', 'P', '1'};
+    
+    private static final ConcurrentHashMap<String, Integer> userIds = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextUserId = new AtomicInteger(1);
+    private static final AtomicLong dropped = new AtomicLong();
+    private static BlockingQueue<long[]> queue;
+    private static Thread writer;
+    private static volatile boolean running;
+    
+    /**
+     * Opens capture file and starts writer thread
+     */
+    public static void start() throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(ServerConfig.CAPTURE_FILE, false), 64 * 1024));
+        long startMillis = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        out.write(MAGIC);
+        out.writeLong(startMillis);
+        
+        queue = new ArrayBlockingQueue<>(ServerConfig.CAPTURE_QUEUE_CAPACITY);
+        running = true;
+        
+        writer = new Thread(() -> writeLoop(out, startNanos), "traffic-capture");
+        writer.setDaemon(true);
+        writer.start();
+        
+        System.out.println("✓ Capturing traffic to " + ServerConfig.CAPTURE_FILE);
+    }
+    
+    /**
+     * Records event; dropped rather than blocking when writer falls behind
+     */
+    public static void record(byte kind, String user, String peer, int size) {
+        if (!ServerConfig.CAPTURE_ENABLED || !running) {
+            return;
+        }
+        long[] event = {kind, System.nanoTime(), idOf(user), peer == null ? 0 : idOf(peer), size};
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Stops capture after writing queued events
+     */
+    public static void stop() {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * Gets number of events dropped because the queue was full
+     */
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+    
+    private static int idOf(String user) {
+        return userIds.computeIfAbsent(user, name -> nextUserId.getAndIncrement());
+    }
+    
+    private static void writeLoop(DataOutputStream out, long startNanos) {
+        long lastMicros = 0;
+        try {
+            while (running || !queue.isEmpty()) {
+                long[] event = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    out.flush();
+                    continue;
+                }
+                
+                long micros = Math.max(lastMicros, (event[1] - startNanos) / 1000);
+                out.writeByte((int) event[0]);
+                writeVarint(out, micros - lastMicros);
+                writeVarint(out, event[2]);
+                writeVarint(out, event[3]);
+                writeVarint(out, event[4]);
+                lastMicros = micros;
+            }
+        } catch (Exception e) {
+            System.err.println("Traffic capture stopped: " + e.getMessage());
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Error closing capture file: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Reads all records from capture file
+     */
+    public static List<Record> read(String path) throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a capture file: " + path);
+            }
+            in.readLong();
+            
+            long micros = 0;
+            while (true) {
+                int kind = in.read();
+                if (kind == -1) {
+                    break;
+                }
+                micros += readVarint(in);
+                records.add(new Record((byte) kind, micros,
+                    (int) readVarint(in), (int) readVarint(in), (int) readVarint(in)));
+            }
+        }
+        return records;
+    }
+    
+    private static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+    
+    private static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Truncated capture record");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+    
+    /**
+     * Captured protocol event
+     */
+    public static class Record {
+        public final byte kind;
+        public final long micros;
+        public final int user;
+        public final int peer;
+        public final int size;
+        
+        public Record(byte kind, long micros, int user, int peer, int size) {
+            this.kind = kind;
+            this.micros = micros;
+            this.user = user;
+            this.peer = peer;
+            this.size = size;
+        }
+    }
+}
@@ -1,25 +1,40 @@
 package util;
 
 import config.ServerConfig;
-import java.util.regex.Pattern;
 
 /**
  * Input validation utility
  * Validates usernames, messages, and security hashes
  */
 public class Validator {
-    private static final Pattern USERNAME_PATTERN = Pattern.compile("^[a-zA-Z0-9_]{3,20}$");
-    private static final Pattern HASH_PATTERN = Pattern.compile("^[a-fA-F0-9]{64}$");
-    
     /**
      * Validates username format
      * Must be 3-20 alphanumeric characters or underscore
      */
     public static boolean isValidUsername(String username) {
         return username != null && 
-               USERNAME_PATTERN.matcher(username).matches() &&
                username.length() >= ServerConfig.MIN_USERNAME_LENGTH &&
-               username.length() <= ServerConfig.MAX_USERNAME_LENGTH;
+               username.length() <= ServerConfig.MAX_USERNAME_LENGTH &&
+               ByteScan.allInClass(username, ByteScan.CharClass.USERNAME);
+    }
+    
+    /**
+     * Validates directory search prefix (may be empty)
+     */
+    public static boolean isValidUsernamePrefix(String prefix) {
+        return prefix != null &&
+               prefix.length() <= ServerConfig.MAX_USERNAME_LENGTH &&
+               ByteScan.allInClass(prefix, ByteScan.CharClass.USERNAME);
+    }
+    
+    /**
+     * Validates text of a batch entry
+     * Shorter than a single message, so a full batch fits in one frame
+     */
+    public static boolean isValidBatchText(String message) {
+        return message != null &&
+               message.length() > 0 &&
+               message.length() <= ServerConfig.MAX_BATCH_TEXT_LENGTH;
     }
     
     /**
@@ -32,12 +47,22 @@ public class Validator {
                message.length() <= ServerConfig.MAX_MESSAGE_LENGTH;
     }
     
+    /**
+     * Validates client message ID used for acknowledged delivery
+     */
+    public static boolean isValidMessageId(String id) {
+        return id != null &&
+               id.length() > 0 &&
+               id.length() <= ServerConfig.MAX_MESSAGE_ID_LENGTH &&
+               ByteScan.allInClass(id, ByteScan.CharClass.MESSAGE_ID);
+    }
+    
     /**
      * Validates SHA-256 hash format
      * Must be 64 hex characters
      */
     public static boolean isValidHash(String hash) {
-        return hash != null && HASH_PATTERN.matcher(hash).matches();
+        return hash != null && hash.length() == 64 && ByteScan.allInClass(hash, ByteScan.CharClass.HEX);
     }
     
     /**
@@ -0,0 +1,72 @@
+package util;
+
+import java.nio.charset.StandardCharsets;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernels for ByteScan
+ * Compares a full register of bytes per step; only loaded when SIMD scanning
+ * is enabled, so the incubator module is not needed otherwise
+ * Lives in its own source root, built by the optional SIMD step (see README)
+ */
+class VectorScan implements ByteScan.Kernel {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    
+    @Override
+    public int indexOf(byte[] data, int from, int to, byte value) {
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            VectorMask<Byte> hits = ByteVector.fromArray(SPECIES, data, i).eq(value);
+            if (hits.anyTrue()) {
+                return i + hits.firstTrue();
+            }
+        }
+        return ByteScan.SCALAR.indexOf(data, i, to, value);
+    }
+    
+    /**
+     * Text shorter than one register stays scalar, where copying it out costs more
+     * than the compares save; the tail is a masked load rather than a scalar loop
+     * Characters outside Latin-1 encode as '?', which no class allows
+     */
+    @Override
+    public boolean allInClass(String text, ByteScan.CharClass charClass) {
+        if (text.length() < SPECIES.length()) {
+            return ByteScan.SCALAR.allInClass(text, charClass);
+        }
+        byte[] data = text.getBytes(StandardCharsets.ISO_8859_1);
+        for (int i = 0; i < data.length; i += SPECIES.length()) {
+            VectorMask<Byte> inRange = SPECIES.indexInRange(i, data.length);
+            ByteVector chunk = ByteVector.fromArray(SPECIES, data, i, inRange);
+            if (!inClass(chunk, charClass).or(inRange.not()).allTrue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static VectorMask<Byte> inClass(ByteVector chunk, ByteScan.CharClass charClass) {
+        char lastLetter = charClass.extra == null ? 'f' : 'z';
+        VectorMask<Byte> allowed = between(chunk, '0', '9')
+            .or(between(chunk, 'a', lastLetter))
+            .or(between(chunk, 'A', Character.toUpperCase(lastLetter)));
+        if (charClass.extra != null) {
+            for (char c : charClass.extra.toCharArray()) {
+                allowed = allowed.or(chunk.eq((byte) c));
+            }
+        }
+        return allowed;
+    }
+    
+    private static VectorMask<Byte> between(ByteVector chunk, char low, char high) {
+        return chunk.compare(VectorOperators.GE, (byte) low).and(chunk.compare(VectorOperators.LE, (byte) high));
+    }
+    
+    @Override
+    public String describe() {
+        return "vector (" + SPECIES.vectorBitSize() + "-bit)";
+    }
+}